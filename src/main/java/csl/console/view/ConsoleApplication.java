@@ -9,6 +9,7 @@ import org.jline.utils.AttributedString;
 import org.jline.utils.Display;
 import org.jline.utils.InfoCmp;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -36,6 +37,37 @@ import java.util.List;
  *     }
  *   }
  * </pre>
+ *
+ *  Rendering by terminal scroll regions for line scrolls ({@link ConsoleDisplayScrollRegion}),
+ *    which is also enabled by the system property <code>-Dcsl.console.scrollRegion=true</code>:
+ * <pre>
+ *     app.setScrollRegion(true); //before initTerminalOnTop()
+ * </pre>
+ *
+ *  Rendering by a separate thread ({@link ConsoleRenderThread}),
+ *    which is also enabled by the system property <code>-Dcsl.console.renderThread=true</code>:
+ * <pre>
+ *     app.setRenderThread(true); //before initTerminalOnTop()
+ * </pre>
+ *   {@link #displayFromMode(List, int, int)} publishes a snapshot of the frame and returns without writing the terminal.
+ *   A WINCH size change is deferred to the command thread by {@link #updateSizeFromMode()}.
+ *
+ *  Writing a frame by a single write to the terminal output ({@link ConsoleFrameTerminal}),
+ *    which is also enabled by the system property <code>-Dcsl.console.frameBuffer=true</code>:
+ * <pre>
+ *     app.setFrameBuffer(true); //before initTerminalOnTop()
+ *     ...
+ *     app.getFrameTerminal().getLastFrameBytes();
+ * </pre>
+ *
+ *  Recording per-phase frame timing ({@link ConsoleMetrics}),
+ *    which is also enabled by the system property <code>-Dcsl.console.metrics=true</code>
+ *    or <code>-Dcsl.console.metrics=file:path</code> exporting values to the path at exit:
+ * <pre>
+ *     app.getMetrics().setEnabled(true);
+ *     app.setMetricsFile(new File("metrics.txt"));
+ *     app.setMetricsHud(true); //shows a summary at the top-right of the screen
+ * </pre>
  */
 public class ConsoleApplication {
     protected Terminal terminal;
@@ -48,6 +80,27 @@ public class ConsoleApplication {
     protected boolean sizeChanged;
 
     protected Display display;
+    /** the terminal for the display: {@link #terminal} or a {@link ConsoleFrameTerminal} wrapping it */
+    protected Terminal displayTerminal;
+    protected boolean frameBuffer = Boolean.getBoolean("csl.console.frameBuffer");
+    protected boolean scrollRegion = Boolean.getBoolean("csl.console.scrollRegion");
+
+    protected boolean renderThreadEnabled = Boolean.getBoolean("csl.console.renderThread");
+    protected int maxFramesPerSecond = 60;
+    protected ConsoleRenderThread renderThread;
+    /** a size set by the signal handler while the render thread is enabled */
+    protected volatile Size pendingSize;
+
+    /** the max number of commands run for a frame. 1 disables coalescing */
+    protected int maxCoalescedCommands = 32;
+    /** milliseconds waiting for next inputs before rendering a frame.
+     *  0 means only inputs arrived within 1ms: each check by {@link #hasPendingInput(long)} waits at least 1ms */
+    protected long maxFrameLatency = 0;
+
+    protected ConsoleMetrics metrics = new ConsoleMetrics(ConsoleMetrics.isEnabledByProperty());
+    /** exported by {@link #exitTerminalOnTop()} if non-null */
+    protected File metricsFile = ConsoleMetrics.getExportFileByProperty();
+    protected volatile boolean metricsHud;
 
     public ConsoleApplication(ConsoleMode defaultMode) {
         this.defaultMode = defaultMode;
@@ -70,8 +123,13 @@ public class ConsoleApplication {
 
             size = terminal.getSize();
 
-            display = new Display(terminal, true);
+            displayTerminal = makeDisplayTerminal();
+            display = makeDisplay();
             display.clear();
+            if (renderThreadEnabled) {
+                renderThread = makeRenderThread();
+                renderThread.start();
+            }
 
             defaultMode.init(this);
             setCurrentMode(defaultMode);
@@ -82,6 +140,10 @@ public class ConsoleApplication {
 
     public void exitTerminalOnTop() {
         try {
+            if (renderThread != null) {
+                renderThread.close();
+                renderThread = null;
+            }
             terminal.puts(InfoCmp.Capability.exit_ca_mode);
             terminal.puts(InfoCmp.Capability.keypad_local);
             terminal.flush();
@@ -89,9 +151,12 @@ public class ConsoleApplication {
             terminal.handle(Terminal.Signal.WINCH, prevHandler);
             terminal.close();
 
+            if (metricsFile != null) {
+                metrics.export(metricsFile);
+            }
             ConsoleLogger.closeLog();
-        } catch (IOException ioe) {
-            error(ioe);
+        } catch (IOException | InterruptedException ex) {
+            error(ex);
         }
     }
 
@@ -106,6 +171,109 @@ public class ConsoleApplication {
         return terminal;
     }
 
+    /** needs to be called before {@link #initTerminalOnTop()} */
+    public void setScrollRegion(boolean scrollRegion) {
+        this.scrollRegion = scrollRegion;
+    }
+
+    public boolean isScrollRegion() {
+        return scrollRegion;
+    }
+
+    /** needs to be called before {@link #initTerminalOnTop()} */
+    public void setFrameBuffer(boolean frameBuffer) {
+        this.frameBuffer = frameBuffer;
+    }
+
+    public boolean isFrameBuffer() {
+        return frameBuffer;
+    }
+
+    protected Terminal makeDisplayTerminal() {
+        if (frameBuffer) {
+            return new ConsoleFrameTerminal(terminal);
+        } else {
+            return terminal;
+        }
+    }
+
+    /** null if the frame buffer is disabled */
+    public ConsoleFrameTerminal getFrameTerminal() {
+        return displayTerminal instanceof ConsoleFrameTerminal ? (ConsoleFrameTerminal) displayTerminal : null;
+    }
+
+    protected Display makeDisplay() {
+        if (scrollRegion) {
+            return new ConsoleDisplayScrollRegion(displayTerminal, true);
+        } else {
+            return new Display(displayTerminal, true);
+        }
+    }
+
+    /** needs to be called before {@link #initTerminalOnTop()} */
+    public void setRenderThread(boolean renderThread) {
+        this.renderThreadEnabled = renderThread;
+    }
+
+    public boolean isRenderThread() {
+        return renderThreadEnabled;
+    }
+
+    /** 0 means no limit. needs to be called before {@link #initTerminalOnTop()} */
+    public void setMaxFramesPerSecond(int maxFramesPerSecond) {
+        this.maxFramesPerSecond = Math.max(0, maxFramesPerSecond);
+    }
+
+    public int getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    protected ConsoleRenderThread makeRenderThread() {
+        ConsoleRenderThread t = new ConsoleRenderThread(displayTerminal, display);
+        t.setMaxFramesPerSecond(maxFramesPerSecond);
+        t.setMetrics(metrics);
+        return t;
+    }
+
+    /** null if the render thread is disabled */
+    public ConsoleRenderThread getRenderThread() {
+        return renderThread;
+    }
+
+    public ConsoleMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** needs to be called before {@link #initTerminalOnTop()} */
+    public void setMetrics(ConsoleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    /** null disables exporting */
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public boolean isMetricsHud() {
+        return metricsHud;
+    }
+
+    /** showing the HUD also enables the metrics */
+    public void setMetricsHud(boolean metricsHud) {
+        this.metricsHud = metricsHud;
+        if (metricsHud) {
+            metrics.setEnabled(true);
+        }
+    }
+
+    public void toggleMetricsHud() {
+        setMetricsHud(!metricsHud);
+    }
+
     public void error(Exception e) {
         //TODO
         throw new RuntimeException(e);
@@ -119,12 +287,29 @@ public class ConsoleApplication {
         }
     }
 
-    /** automatically called when WINCH (window size change) */
+    /** automatically called when WINCH (window size change).
+     *   While the render thread is enabled, the new size is applied by {@link #updateSizeFromMode()} */
     public synchronized void handleOnTop(Terminal.Signal signal) {
         if (signal.equals(Terminal.Signal.WINCH)) {
-            size = terminal.getSize();
-            sizeChanged = true;
-            currentMode.sizeUpdatedFromApp(this, size);
+            if (renderThread != null) {
+                pendingSize = terminal.getSize();
+            } else {
+                size = terminal.getSize();
+                sizeChanged = true;
+                currentMode.sizeUpdatedFromApp(this, size);
+            }
+        }
+    }
+
+    /** called from the command thread before rendering a frame: applies the size deferred by the signal handler */
+    public void updateSizeFromMode() {
+        Size newSize = pendingSize;
+        if (newSize != null) {
+            pendingSize = null;
+            size = newSize;
+            if (currentMode != null) {
+                currentMode.sizeUpdatedFromApp(this, size);
+            }
         }
     }
 
@@ -140,6 +325,36 @@ public class ConsoleApplication {
         return reader;
     }
 
+    /** the max number of commands run before rendering a frame, including the first blocking one.
+     *   1 disables coalescing of inputs */
+    public void setMaxCoalescedCommands(int maxCoalescedCommands) {
+        this.maxCoalescedCommands = Math.max(1, maxCoalescedCommands);
+    }
+
+    public int getMaxCoalescedCommands() {
+        return maxCoalescedCommands;
+    }
+
+    /** milliseconds for waiting next inputs before rendering a frame.
+     *    0 means only inputs arrived within 1ms are coalesced,
+     *    thus a frame after a command is delayed at least 1ms for the check of a next input */
+    public void setMaxFrameLatency(long maxFrameLatency) {
+        this.maxFrameLatency = Math.max(0, maxFrameLatency);
+    }
+
+    public long getMaxFrameLatency() {
+        return maxFrameLatency;
+    }
+
+    /**
+     * waits for an input at most timeoutMillis and returns true if it is available.
+     *  The wait is at least 1ms because {@link org.jline.utils.NonBlockingReader#peek(long)} waits forever with 0,
+     *   and its ready() can block while its reading thread is reading
+     */
+    public boolean hasPendingInput(long timeoutMillis) {
+        return reader.peekCharacter(Math.max(1L, timeoutMillis)) >= 0;
+    }
+
     public ConsoleMode getDefaultMode() {
         return defaultMode;
     }
@@ -152,6 +367,13 @@ public class ConsoleApplication {
     }
 
     public void displayFromMode(List<AttributedString> lines, int cursorRow, int cursorColumn) {
+        if (renderThread != null) {
+            if (renderThread.getError() != null) {
+                error(renderThread.getError());
+            }
+            renderThread.publish(new ConsoleRenderThread.Frame(lines, cursorRow, cursorColumn, size));
+            return;
+        }
         if (sizeChanged) {
             sizeChanged = false;
             display.clear();
@@ -159,9 +381,31 @@ public class ConsoleApplication {
         int r = Math.max(1, size.getRows());
         int c = Math.max(1, size.getColumns());
         display.resize(r, c);
+        long t = metrics.start();
         display.update(lines, size.cursorPos(cursorRow, cursorColumn));
-        terminal.flush();
+        metrics.record(ConsoleMetrics.Phase.DISPLAY, t);
+        t = metrics.start();
+        displayTerminal.flush();
+        metrics.record(ConsoleMetrics.Phase.FLUSH, t);
     }
 
+    /** waits until the last frame is written to the terminal: needed before writing the terminal directly */
+    public void awaitDisplayFromMode() {
+        if (renderThread != null) {
+            try {
+                renderThread.awaitRendered();
+            } catch (InterruptedException ie) {
+                error(ie);
+            }
+        }
+    }
 
+    /** resets and clears the display, with locking it against the render thread */
+    public void resetDisplayFromMode() {
+        synchronized (display) {
+            display.reset();
+            display.clear();
+            displayTerminal.flush();
+        }
+    }
 }
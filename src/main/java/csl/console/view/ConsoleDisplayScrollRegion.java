@@ -0,0 +1,175 @@
+package csl.console.view;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.jline.utils.InfoCmp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Display} which detects a vertical shift of the previous frame
+ *   and scrolls the shifted rows by the terminal before the diff update.
+ * <pre>
+ *     old frame          new frame
+ *      0: header          0: header
+ *      1: a         =&gt;    1: b       //rows 1..3 in the old frame are
+ *      2: b               2: c       //   scrolled by scroll_forward in the region 1..3
+ *      3: c               3: d       //the diff update writes only the exposed row 3 ("d")
+ *      4: status          4: status
+ * </pre>
+ *  The shift is searched up to {@link #getMaxShift()} rows for both directions,
+ *    and the longest run of equal rows is taken if it covers at least {@link #getMinRun()} rows.
+ *  The scrolling uses change_scroll_region, cursor_address and
+ *    scroll_forward/scroll_reverse (or parm_index/parm_rindex),
+ *    and the renderer falls back to the plain {@link Display} if the terminal lacks them.
+ */
+public class ConsoleDisplayScrollRegion extends Display {
+    protected int maxShift;
+    protected int minRun = 3;
+    protected boolean supported;
+
+    /** the last scrolled rows: positive for forward and negative for reverse. for debugging */
+    protected int lastShift;
+
+    public ConsoleDisplayScrollRegion(Terminal terminal, boolean fullscreen) {
+        super(terminal, fullscreen);
+        supported = has(InfoCmp.Capability.change_scroll_region) &&
+                has(InfoCmp.Capability.cursor_address) &&
+                (has(InfoCmp.Capability.scroll_forward) || has(InfoCmp.Capability.parm_index)) &&
+                (has(InfoCmp.Capability.scroll_reverse) || has(InfoCmp.Capability.parm_rindex));
+    }
+
+    protected boolean has(InfoCmp.Capability cap) {
+        return terminal.getStringCapability(cap) != null;
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /** 0 means the half of rows */
+    public void setMaxShift(int maxShift) {
+        this.maxShift = maxShift;
+    }
+
+    public int getMaxShift() {
+        return maxShift > 0 ? maxShift : Math.max(1, rows / 2);
+    }
+
+    public void setMinRun(int minRun) {
+        this.minRun = minRun;
+    }
+
+    public int getMinRun() {
+        return minRun;
+    }
+
+    public int getLastShift() {
+        return lastShift;
+    }
+
+    @Override
+    public void update(List<AttributedString> newLines, int targetCursorPos) {
+        lastShift = 0;
+        if (supported && fullScreen && !reset && oldLines != null && !oldLines.isEmpty()) {
+            scrollIfShifted(newLines);
+        }
+        super.update(newLines, targetCursorPos);
+    }
+
+    /**
+     * finds a shift k and a run [start,end) s.t. newLines[i] equals oldLines[i+k] for i in the run,
+     *  and then scrolls the rows of the run on the terminal and in {@link #oldLines}
+     */
+    protected void scrollIfShifted(List<AttributedString> newLines) {
+        List<AttributedString> old = oldLines;
+        int n = Math.min(Math.min(newLines.size(), old.size()), rows);
+        int bestShift = 0;
+        int bestStart = 0;
+        int bestRun = 0;
+        for (int d = 1, max = Math.min(getMaxShift(), n - 1); d <= max; ++d) {
+            for (int k = d; k >= -d; k -= 2 * d) {
+                int start = 0;
+                int run = 0;
+                for (int i = Math.max(0, -k), e = Math.min(n, n - k); i < e; ++i) {
+                    if (newLines.get(i).equals(old.get(i + k))) {
+                        if (run == 0) {
+                            start = i;
+                        }
+                        ++run;
+                        if (run > bestRun) {
+                            bestRun = run;
+                            bestStart = start;
+                            bestShift = k;
+                        }
+                    } else {
+                        run = 0;
+                    }
+                }
+            }
+        }
+        if (bestShift != 0 && bestRun >= minRun && bestRun > countUnchanged(newLines, old, n, bestStart, bestRun)) {
+            scroll(bestShift, bestStart, bestStart + bestRun);
+        }
+    }
+
+    /** the number of rows in the run which are equal without any shift: scrolling is useless if it is large */
+    protected int countUnchanged(List<AttributedString> newLines, List<AttributedString> old, int n, int start, int run) {
+        int c = 0;
+        for (int i = start, e = Math.min(n, start + run); i < e; ++i) {
+            if (newLines.get(i).equals(old.get(i))) {
+                ++c;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * <pre>
+     *   shift &gt; 0: the region [start, end+shift) of old rows is scrolled up by shift.
+     *   shift &lt; 0: the region [start+shift, end) of old rows is scrolled down by -shift.
+     * </pre>
+     */
+    protected void scroll(int shift, int start, int end) {
+        int top = (shift > 0 ? start : start + shift);
+        int bottom = (shift > 0 ? end + shift : end) - 1; //inclusive
+        int count = Math.abs(shift);
+
+        terminal.puts(InfoCmp.Capability.change_scroll_region, top, bottom);
+        if (shift > 0) {
+            terminal.puts(InfoCmp.Capability.cursor_address, bottom, 0);
+            repeat(InfoCmp.Capability.parm_index, InfoCmp.Capability.scroll_forward, count);
+        } else {
+            terminal.puts(InfoCmp.Capability.cursor_address, top, 0);
+            repeat(InfoCmp.Capability.parm_rindex, InfoCmp.Capability.scroll_reverse, count);
+        }
+        terminal.puts(InfoCmp.Capability.change_scroll_region, 0, rows - 1);
+        terminal.puts(InfoCmp.Capability.cursor_address, 0, 0);
+        cursorPos = 0;
+
+        List<AttributedString> scrolled = new ArrayList<>(oldLines);
+        if (shift > 0) {
+            for (int i = top; i <= bottom; ++i) {
+                scrolled.set(i, i + count <= bottom ? oldLines.get(i + count) : AttributedString.EMPTY);
+            }
+        } else {
+            for (int i = bottom; i >= top; --i) {
+                scrolled.set(i, i - count >= top ? oldLines.get(i - count) : AttributedString.EMPTY);
+            }
+        }
+        oldLines = scrolled;
+        lastShift = shift;
+    }
+
+    protected void repeat(InfoCmp.Capability parm, InfoCmp.Capability single, int count) {
+        if (count > 1 && has(parm)) {
+            terminal.puts(parm, count);
+        } else {
+            for (int i = 0; i < count; ++i) {
+                terminal.puts(single);
+            }
+        }
+    }
+}
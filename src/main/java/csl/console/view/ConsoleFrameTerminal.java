@@ -0,0 +1,276 @@
+package csl.console.view;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Cursor;
+import org.jline.terminal.MouseEvent;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyleEncoder;
+import org.jline.utils.Curses;
+import org.jline.utils.InfoCmp;
+import org.jline.utils.NonBlockingReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A terminal collecting the output of a frame into a reusable byte buffer,
+ *   and writing the buffer to the {@link Terminal#output()} of the underlying terminal by a single write at {@link #flush()}.
+ * <pre>
+ *     ConsoleFrameTerminal frameTerminal = new ConsoleFrameTerminal(terminal);
+ *     Display display = new Display(frameTerminal, true);
+ *     ...
+ *     display.update(lines, cursorPos); //encoded into the buffer
+ *     frameTerminal.flush();            //one write and one flush of the output stream
+ * </pre>
+ *  {@link #writer()} and {@link #puts(InfoCmp.Capability, Object...)} are buffered,
+ *    and other methods are delegated to the underlying terminal.
+ *  The buffer grows to the largest frame and is kept for next frames.
+ *  {@link #writeAnsi(AttributedString)} encodes a string directly into the buffer by {@link AttributedStyleEncoder}.
+ */
+public class ConsoleFrameTerminal implements Terminal {
+    protected Terminal terminal;
+    protected FrameBuffer buffer = new FrameBuffer(1 << 14);
+    protected PrintWriter writer;
+
+    protected long frames;
+    protected long totalBytes;
+    protected int lastFrameBytes;
+    protected int maxFrameBytes;
+
+    /** the buffer exposing its array */
+    public static class FrameBuffer extends ByteArrayOutputStream {
+        public FrameBuffer(int size) {
+            super(size);
+        }
+
+        public byte[] getBytes() {
+            return buf;
+        }
+
+        public int getCapacity() {
+            return buf.length;
+        }
+    }
+
+    /** encodes characters by the default charset */
+    public ConsoleFrameTerminal(Terminal terminal) {
+        this(terminal, Charset.defaultCharset());
+    }
+
+    public ConsoleFrameTerminal(Terminal terminal, Charset charset) {
+        this.terminal = terminal;
+        writer = new PrintWriter(new OutputStreamWriter(buffer, charset));
+    }
+
+    public Terminal getTerminal() {
+        return terminal;
+    }
+
+    @Override
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    @Override
+    public boolean puts(InfoCmp.Capability capability, Object... params) {
+        String str = getStringCapability(capability);
+        if (str == null) {
+            return false;
+        }
+        try {
+            Curses.tputs(writer, str, params);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+        return true;
+    }
+
+    /** appends the string with SGR sequences as UTF-8 bytes, equivalent to <code>writer().write(str.toAnsi(this))</code> */
+    public synchronized void writeAnsi(AttributedString str) {
+        writer.flush();
+        AttributedStyleEncoder.get(terminal).append(str, buffer);
+    }
+
+    /** writes the buffered frame to the output of the underlying terminal. nothing happens if the buffer is empty */
+    @Override
+    public synchronized void flush() {
+        writer.flush();
+        int n = buffer.size();
+        if (n == 0) {
+            return;
+        }
+        try {
+            terminal.writer().flush(); //preceding outputs by the underlying terminal
+            OutputStream out = terminal.output();
+            out.write(buffer.getBytes(), 0, n);
+            out.flush();
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        } finally {
+            buffer.reset();
+        }
+        ++frames;
+        totalBytes += n;
+        lastFrameBytes = n;
+        maxFrameBytes = Math.max(maxFrameBytes, n);
+    }
+
+    /** the number of non-empty flushes */
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    public synchronized int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public synchronized double getAverageFrameBytes() {
+        return frames == 0 ? 0 : totalBytes / (double) frames;
+    }
+
+    public synchronized int getBufferCapacity() {
+        return buffer.getCapacity();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ConsoleFrameTerminal(frames=" + frames + ", totalBytes=" + totalBytes +
+                ", lastFrameBytes=" + lastFrameBytes + ", maxFrameBytes=" + maxFrameBytes + ")";
+    }
+
+    ///////////////////////
+
+    @Override
+    public String getName() {
+        return terminal.getName();
+    }
+
+    @Override
+    public SignalHandler handle(Signal signal, SignalHandler handler) {
+        return terminal.handle(signal, handler);
+    }
+
+    @Override
+    public void raise(Signal signal) {
+        terminal.raise(signal);
+    }
+
+    @Override
+    public NonBlockingReader reader() {
+        return terminal.reader();
+    }
+
+    @Override
+    public InputStream input() {
+        return terminal.input();
+    }
+
+    @Override
+    public OutputStream output() {
+        return terminal.output();
+    }
+
+    @Override
+    public Attributes enterRawMode() {
+        return terminal.enterRawMode();
+    }
+
+    @Override
+    public boolean echo() {
+        return terminal.echo();
+    }
+
+    @Override
+    public boolean echo(boolean echo) {
+        return terminal.echo(echo);
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return terminal.getAttributes();
+    }
+
+    @Override
+    public void setAttributes(Attributes attr) {
+        terminal.setAttributes(attr);
+    }
+
+    @Override
+    public Size getSize() {
+        return terminal.getSize();
+    }
+
+    @Override
+    public void setSize(Size size) {
+        terminal.setSize(size);
+    }
+
+    @Override
+    public String getType() {
+        return terminal.getType();
+    }
+
+    @Override
+    public boolean getBooleanCapability(InfoCmp.Capability capability) {
+        return terminal.getBooleanCapability(capability);
+    }
+
+    @Override
+    public Integer getNumericCapability(InfoCmp.Capability capability) {
+        return terminal.getNumericCapability(capability);
+    }
+
+    @Override
+    public String getStringCapability(InfoCmp.Capability capability) {
+        return terminal.getStringCapability(capability);
+    }
+
+    @Override
+    public Cursor getCursorPosition(IntConsumer discarded) {
+        return terminal.getCursorPosition(discarded);
+    }
+
+    @Override
+    public boolean hasMouseSupport() {
+        return terminal.hasMouseSupport();
+    }
+
+    @Override
+    public boolean trackMouse(MouseTracking tracking) {
+        return terminal.trackMouse(tracking);
+    }
+
+    @Override
+    public MouseEvent readMouseEvent() {
+        return terminal.readMouseEvent();
+    }
+
+    @Override
+    public MouseEvent readMouseEvent(IntSupplier reader) {
+        return terminal.readMouseEvent(reader);
+    }
+
+    /** flushes the buffer. the underlying terminal is not closed */
+    @Override
+    public void close() {
+        flush();
+    }
+}
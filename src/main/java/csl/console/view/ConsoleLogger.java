@@ -3,31 +3,136 @@ package csl.console.view;
 import javax.swing.*;
 import javax.swing.text.Document;
 import java.awt.*;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+/**
+ * a simple logger for debugging console applications, which cannot print messages to the terminal.
+ * <pre>
+ *     ConsoleLogger.log("message");                                   //at {@link Level#INFO}
+ *     ConsoleLogger.log(Level.DEBUG, "cols: {} head: {}", cs, head);  //formatted only if DEBUG is enabled
+ *     ConsoleLogger.log(Level.DEBUG, () -&gt; expensiveMessage());
+ *     if (ConsoleLogger.isEnabled(Level.DEBUG)) { ... }
+ * </pre>
+ *  {@link #ENABLED} and the level are static final fields initialized by the properties,
+ *   thus a disabled call is folded to nothing by the JIT
+ *   and does not build the message.
+ */
 public class ConsoleLogger {
     private static volatile LogDest global;
 
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /** false if the property "csl.console.log" is "false" (the default) */
+    public static final boolean ENABLED = !System.getProperty("csl.console.log", "false").equals("false");
+
+    /** the property "csl.console.logLevel": one of "debug" (the default), "info", "warn" and "error" */
+    public static final Level LEVEL = level(System.getProperty("csl.console.logLevel", "debug"));
+
+    private static final int LEVEL_ORDINAL = LEVEL.ordinal();
+
+    private static Level level(String name) {
+        try {
+            return Level.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return Level.DEBUG;
+        }
+    }
+
+    public static boolean isEnabled(Level level) {
+        return ENABLED && level.ordinal() >= LEVEL_ORDINAL;
+    }
+
     /**
      * use the property "csl.console.log", which takes the form of "col[,col]...":
      *   col is one of
      *     <ul>
      *         <li> "file:path" : specifies a file path by the "path" as the destination</li>
+     *         <li> "async-file:path" : the file written by a background thread. see {@link LogDestAsyncFile} </li>
      *         <li> "err" : specifies System.err </li>
      *         <li> "true" : specifies Swing GUI console </li>
      *         <li> "false" : no logging </li>
      *     </ul>
      * The default is mere "false".
+     * The msg is logged at {@link Level#INFO}.
      */
     public static void log(String msg) {
-        if (global == null) {
-            setup();
+        if (isEnabled(Level.INFO)) {
+            accept(msg);
+        }
+    }
+
+    public static void log(Level level, String msg) {
+        if (isEnabled(level)) {
+            accept(msg);
+        }
+    }
+
+    /** the msg is obtained only if the level is enabled */
+    public static void log(Level level, Supplier<String> msg) {
+        if (isEnabled(level)) {
+            accept(msg.get());
+        }
+    }
+
+    /** the pattern is formatted by {@link #format(String, Object...)} only if the level is enabled */
+    public static void log(Level level, String pattern, Object arg) {
+        if (isEnabled(level)) {
+            accept(format(pattern, arg));
+        }
+    }
+
+    public static void log(Level level, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(level)) {
+            accept(format(pattern, arg1, arg2));
+        }
+    }
+
+    public static void log(Level level, String pattern, Object... args) {
+        if (isEnabled(level)) {
+            accept(format(pattern, args));
+        }
+    }
+
+    /**
+     * replaces each "{}" in the pattern with the next arg.
+     * <pre>
+     *     format("a={} b={}", 1, 2) //"a=1 b=2"
+     * </pre>
+     *  Extra "{}" are left as they are and extra args are ignored.
+     */
+    public static String format(String pattern, Object... args) {
+        StringBuilder buf = new StringBuilder(pattern.length() + 16 * args.length);
+        int prev = 0;
+        for (Object arg : args) {
+            int next = pattern.indexOf("{}", prev);
+            if (next < 0) {
+                break;
+            }
+            buf.append(pattern, prev, next).append(arg);
+            prev = next + 2;
         }
-        global.accept(msg);
+        return buf.append(pattern, prev, pattern.length()).toString();
+    }
+
+    private static void accept(String msg) {
+        LogDest g = global;
+        if (g == null) {
+            g = setup();
+        }
+        g.accept(msg);
     }
 
     public static void closeLog() {
@@ -36,7 +141,11 @@ public class ConsoleLogger {
         }
     }
 
-    private static void setup() {
+    /** double-checked: destinations are created once even if worker threads log concurrently */
+    private static synchronized LogDest setup() {
+        if (global != null) {
+            return global;
+        }
         String type = System.getProperty("csl.console.log", "false");
 
         LogDest f = null;
@@ -44,6 +153,9 @@ public class ConsoleLogger {
             if (col.startsWith("file:")) {
                 File file = new File(col.substring("file:".length()));
                 f = compose(f, new LogDestFile(file));
+            } else if (col.startsWith("async-file:")) {
+                File file = new File(col.substring("async-file:".length()));
+                f = compose(f, new LogDestAsyncFile(file));
             } else if (col.equals("err")) {
                 f = compose(f, System.err::println);
             } else if (!col.equals("false")) {
@@ -54,6 +166,7 @@ public class ConsoleLogger {
             f = (line) -> {};
         }
         global = f;
+        return f;
     }
 
 
@@ -119,6 +232,136 @@ public class ConsoleLogger {
             }
         }
     }
+
+    /**
+     * a file destination written by a daemon thread.
+     * <pre>
+     *     caller threads --accept(line)--&gt; [ring buffer of lines] --writer thread--&gt; BufferedWriter --&gt; file
+     * </pre>
+     *  {@link #accept(String)} only claims a slot of the bounded ring buffer by a CAS and never blocks:
+     *   if the buffer is full, the line is dropped and counted,
+     *   and the writer thread later writes a line reporting the number of dropped lines.
+     *  The writer thread drains all available lines into a buffered writer and flushes them by a large write,
+     *   and then parks for {@link #getFlushIntervalMillis()}.
+     *  {@link #close()} writes remaining lines.
+     */
+    public static class LogDestAsyncFile implements LogDest {
+        protected final AtomicReferenceArray<String> slots;
+        protected final int mask;
+        /** the next index claimed by callers */
+        protected final AtomicLong tail = new AtomicLong();
+        /** the next index read by the writer thread */
+        protected final AtomicLong head = new AtomicLong();
+        protected final AtomicLong dropped = new AtomicLong();
+        protected long droppedReported;
+
+        protected final Writer writer;
+        protected final Thread thread;
+        protected final long flushIntervalMillis;
+        protected volatile boolean closed;
+        protected volatile Throwable error;
+
+        public LogDestAsyncFile(File file) {
+            this(file, 8192, 50);
+        }
+
+        /** the capacity is rounded up to a power of 2 */
+        public LogDestAsyncFile(File file, int capacity, long flushIntervalMillis) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+            slots = new AtomicReferenceArray<>(size);
+            mask = size - 1;
+            this.flushIntervalMillis = flushIntervalMillis;
+            try {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            thread = new Thread(this::run, "console-log");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void accept(String line) {
+            long t;
+            do {
+                t = tail.get();
+                if (t - head.get() > mask || closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            } while (!tail.compareAndSet(t, t + 1));
+            slots.set((int) t & mask, line);
+            if (t - head.get() == (mask + 1) / 2) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        protected void run() {
+            try {
+                while (!closed) {
+                    drain();
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+                }
+            } catch (Throwable ex) {
+                error = ex;
+            }
+        }
+
+        /** writes all available lines by the writer thread */
+        protected void drain() throws Exception {
+            long h = head.get();
+            boolean written = false;
+            while (h < tail.get()) {
+                int i = (int) h & mask;
+                String line = slots.get(i);
+                if (line == null) { //claimed but not yet set
+                    Thread.yield();
+                    continue;
+                }
+                slots.set(i, null);
+                head.lazySet(++h);
+                writer.write(line);
+                writer.write('\n');
+                written = true;
+            }
+            long d = dropped.get();
+            if (d != droppedReported) {
+                writer.write("[ConsoleLogger] dropped " + (d - droppedReported) + " lines\n");
+                droppedReported = d;
+                written = true;
+            }
+            if (written) {
+                writer.flush();
+            }
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+                drain();
+                writer.close();
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
     public static class LogDestGui implements LogDest {
         ConsoleLogger logger  = new ConsoleLogger();
         @Override
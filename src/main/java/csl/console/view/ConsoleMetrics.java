@@ -0,0 +1,319 @@
+package csl.console.view;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-frame measurements of a {@link ConsoleApplication}: latency histograms of phases,
+ *   counts of commands and counts of calls to the {@link TerminalTree} (by {@link TerminalTreeCounting}).
+ * <pre>
+ *     long t = metrics.start();
+ *     ... //a phase
+ *     metrics.record(ConsoleMetrics.Phase.WRITE, t);
+ *     ...
+ *     metrics.endFrame(); //called by {@link ConsoleMode#display(ConsoleApplication)}
+ *
+ *     metrics.getHistogram(ConsoleMetrics.Phase.FRAME).getPercentile(0.99); //nanoseconds
+ *     metrics.export(new File("metrics.txt"));
+ * </pre>
+ *  A disabled instance records nothing, and {@link #start()} does not read the clock.
+ *  Subclasses can override {@link #record(Phase, long)}, {@link #countCommand(String)}
+ *   and {@link #countTreeCall(String)} to send values to other destinations.
+ *  <p>
+ *  Histograms have power-of-2 buckets of values,
+ *    thus percentiles are the upper bounds of buckets, at most twice of actual values.
+ *  Phases may be recorded by the render thread, and all methods are synchronized except for {@link #start()}.
+ */
+public class ConsoleMetrics {
+    public enum Phase {
+        /** {@link TerminalTreeView#build()} */
+        BUILD,
+        /** updating tokens of display items by {@link TerminalTreeView#getDisplayItemsWithBuild(boolean)} */
+        TOKENS,
+        /** {@link TerminalTreeView#write()} */
+        WRITE,
+        /** {@link org.jline.utils.Display#update(java.util.List, int)} */
+        DISPLAY,
+        /** {@link org.jline.terminal.Terminal#flush()} after the display update */
+        FLUSH,
+        /** {@link ConsoleCommand#run(ConsoleApplication)} */
+        COMMAND,
+        /** {@link ConsoleMode#display(ConsoleApplication)} including the above phases */
+        FRAME
+    }
+
+    protected volatile boolean enabled;
+    protected Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+    /** the values of the last frame in nanoseconds */
+    protected long[] lastFrame = new long[Phase.values().length];
+    protected long[] currentFrame = new long[Phase.values().length];
+
+    /** key: command name, value: {count} */
+    protected Map<String, long[]> commands = new TreeMap<>();
+    /** key: method name, value: {count} */
+    protected Map<String, long[]> treeCalls = new TreeMap<>();
+    protected Histogram commandsPerFrame = new Histogram();
+    protected Histogram treeCallsPerFrame = new Histogram();
+    protected long currentCommands;
+    protected long currentTreeCalls;
+
+    protected long frames;
+    /** end times of recent frames for {@link #getFramesPerSecond()} */
+    protected long[] frameTimes = new long[128];
+
+    /**
+     * the property "csl.console.metrics":
+     *  <ul>
+     *      <li>"true": enables metrics</li>
+     *      <li>"file:path": enables metrics and exports them to the path by {@link ConsoleApplication#exitTerminalOnTop()}</li>
+     *      <li>"false": disabled (the default)</li>
+     *  </ul>
+     */
+    public static boolean isEnabledByProperty() {
+        return !System.getProperty("csl.console.metrics", "false").equals("false");
+    }
+
+    /** the path of "file:path" of the property "csl.console.metrics", or null */
+    public static File getExportFileByProperty() {
+        String p = System.getProperty("csl.console.metrics", "false");
+        return p.startsWith("file:") ? new File(p.substring("file:".length())) : null;
+    }
+
+    public ConsoleMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Phase p : Phase.values()) {
+            phases.put(p, new Histogram());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** the current time in nanoseconds, or 0 if disabled */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** records the time from startNanos obtained by {@link #start()} */
+    public void record(Phase phase, long startNanos) {
+        if (enabled && startNanos != 0) {
+            long t = System.nanoTime() - startNanos;
+            synchronized (this) {
+                phases.get(phase).add(t);
+                currentFrame[phase.ordinal()] += t;
+            }
+        }
+    }
+
+    public void countCommand(String name) {
+        if (enabled) {
+            synchronized (this) {
+                ++commands.computeIfAbsent(name, n -> new long[1])[0];
+                ++currentCommands;
+            }
+        }
+    }
+
+    public void countTreeCall(String method) {
+        if (enabled) {
+            synchronized (this) {
+                ++treeCalls.computeIfAbsent(method, n -> new long[1])[0];
+                ++currentTreeCalls;
+            }
+        }
+    }
+
+    /** finishes values of the current frame */
+    public synchronized void endFrame() {
+        if (!enabled) {
+            return;
+        }
+        frameTimes[(int) (frames % frameTimes.length)] = System.nanoTime();
+        ++frames;
+        System.arraycopy(currentFrame, 0, lastFrame, 0, currentFrame.length);
+        Arrays.fill(currentFrame, 0);
+        commandsPerFrame.add(currentCommands);
+        treeCallsPerFrame.add(currentTreeCalls);
+        currentCommands = 0;
+        currentTreeCalls = 0;
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized Histogram getHistogram(Phase phase) {
+        return phases.get(phase).copy();
+    }
+
+    public synchronized Histogram getCommandsPerFrame() {
+        return commandsPerFrame.copy();
+    }
+
+    public synchronized Histogram getTreeCallsPerFrame() {
+        return treeCallsPerFrame.copy();
+    }
+
+    /** nanoseconds of the phase in the last frame */
+    public synchronized long getLastFrame(Phase phase) {
+        return lastFrame[phase.ordinal()];
+    }
+
+    /** the phase taking the longest time in the last frame except for {@link Phase#FRAME}, or null */
+    public synchronized Phase getSlowestPhase() {
+        Phase slowest = null;
+        long max = 0;
+        for (Phase p : Phase.values()) {
+            long t = lastFrame[p.ordinal()];
+            if (p != Phase.FRAME && t > max) {
+                max = t;
+                slowest = p;
+            }
+        }
+        return slowest;
+    }
+
+    public synchronized long getCommandCount(String name) {
+        long[] c = commands.get(name);
+        return c == null ? 0 : c[0];
+    }
+
+    public synchronized long getTreeCallCount(String method) {
+        long[] c = treeCalls.get(method);
+        return c == null ? 0 : c[0];
+    }
+
+    /** frames ended within the last second, measured by recent frames */
+    public synchronized double getFramesPerSecond() {
+        int n = (int) Math.min(frames, frameTimes.length);
+        if (n < 2) {
+            return 0;
+        }
+        long last = frameTimes[(int) ((frames - 1) % frameTimes.length)];
+        long now = System.nanoTime();
+        int count = 0;
+        long first = last;
+        for (int i = 0; i < n; ++i) {
+            long t = frameTimes[(int) ((frames - 1 - i) % frameTimes.length)];
+            if (now - t > 1000_000_000L) {
+                break;
+            }
+            first = t;
+            ++count;
+        }
+        if (count < 2 || last == first) {
+            return count;
+        }
+        return (count - 1) * 1e9 / (last - first);
+    }
+
+    /** a line for the HUD: "fps 60.0 frame p50 1.0ms p99 4.0ms slowest WRITE 0.8ms" */
+    public synchronized String getSummary() {
+        Histogram frame = phases.get(Phase.FRAME);
+        Phase slowest = getSlowestPhase();
+        return String.format("fps %.1f frame p50 %s p99 %s slowest %s",
+                getFramesPerSecond(),
+                formatNanos(frame.getPercentile(0.5)),
+                formatNanos(frame.getPercentile(0.99)),
+                slowest == null ? "-" : slowest + " " + formatNanos(lastFrame[slowest.ordinal()]));
+    }
+
+    public static String formatNanos(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    /** writes all values as text lines */
+    public synchronized void export(PrintWriter out) {
+        out.println("frames " + frames);
+        out.println("phase count mean(ns) p50(ns) p99(ns) max(ns)");
+        for (Map.Entry<Phase, Histogram> e : phases.entrySet()) {
+            out.println(e.getKey() + " " + e.getValue());
+        }
+        out.println("commandsPerFrame " + commandsPerFrame);
+        out.println("treeCallsPerFrame " + treeCallsPerFrame);
+        for (Map.Entry<String, long[]> e : commands.entrySet()) {
+            out.println("command \"" + e.getKey() + "\" " + e.getValue()[0]);
+        }
+        for (Map.Entry<String, long[]> e : treeCalls.entrySet()) {
+            out.println("tree " + e.getKey() + " " + e.getValue()[0]);
+        }
+        out.flush();
+    }
+
+    public void export(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            export(out);
+        }
+    }
+
+    /** a histogram of non-negative values with 64 power-of-2 buckets: the bucket i has values in [2^(i-1), 2^i) */
+    public static class Histogram {
+        protected long[] buckets = new long[64];
+        protected long count;
+        protected long sum;
+        protected long max;
+
+        public void add(long value) {
+            value = Math.max(0, value);
+            ++buckets[64 - Long.numberOfLeadingZeros(value)];
+            ++count;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : sum / (double) count;
+        }
+
+        /** the upper bound of the bucket including the p-quantile (0..1), clipped by the max */
+        public long getPercentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long n = 0;
+            for (int i = 0; i < buckets.length; ++i) {
+                n += buckets[i];
+                if (n >= rank) {
+                    return i == 0 ? 0 : Math.min(max, i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        public Histogram copy() {
+            Histogram h = new Histogram();
+            h.buckets = buckets.clone();
+            h.count = count;
+            h.sum = sum;
+            h.max = max;
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            return count + " " + (long) getMean() + " " + getPercentile(0.5) + " " + getPercentile(0.99) + " " + max;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.jline.keymap.KeyMap;
 import org.jline.terminal.Size;
 import org.jline.terminal.Terminal;
 import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -36,10 +38,13 @@ import java.util.stream.Collectors;
  *            <ul>
  *                <li>{@link #runLoopBody(ConsoleApplication)}
  *                <ul>
+ *                    <li>{@link ConsoleApplication#updateSizeFromMode()}:
+ *                         calls {@link #sizeUpdatedFromApp(ConsoleApplication, Size)} if the render thread is enabled</li>
  *                    <li>{@link #display(ConsoleApplication)}
  *                        <ul>
  *                            <li>{@link #getLines(ConsoleApplication)}</li>
  *                            <li>{@link #getCursorRowAndColumn(ConsoleApplication)}</li>
+ *                            <li>{@link #displayMetricsHud(ConsoleApplication, List)} if {@link ConsoleApplication#isMetricsHud()}</li>
  *                            <li>{@link ConsoleApplication#displayFromMode(List, int, int)}</li>
  *                        </ul>
  *                    </li>
@@ -48,6 +53,8 @@ import java.util.stream.Collectors;
  *                            <li>{@link ConsoleCommand#run(ConsoleApplication)}</li>
  *                        </ul>
  *                    </li>
+ *                    <li>{@link #runPendingCommands(ConsoleApplication)}:
+ *                         repeats {@link #runRootCommand(ConsoleApplication)} while inputs are available</li>
  *                </ul>
  *                </li>
  *            </ul>
@@ -125,25 +132,84 @@ public class ConsoleMode {
     }
 
     public void runLoopBody(ConsoleApplication app) {
+        app.updateSizeFromMode();
         display(app);
         runRootCommand(app);
+        runPendingCommands(app);
     }
 
+    /**
+     * runs commands for inputs already arrived (e.g. auto-repeated keys) without rendering frames,
+     *   up to {@link ConsoleApplication#getMaxCoalescedCommands()} commands including the previous one
+     *   and within {@link ConsoleApplication#getMaxFrameLatency()} (at least 1ms for checking a next input).
+     *  It stops if a command changes the current mode.
+     */
+    public void runPendingCommands(ConsoleApplication app) {
+        int max = app.getMaxCoalescedCommands();
+        long deadline = System.nanoTime() + app.getMaxFrameLatency() * 1000_000L;
+        for (int i = 1; i < max && app.getCurrentMode() == this; ++i) {
+            long wait = (deadline - System.nanoTime()) / 1000_000L;
+            if (!app.hasPendingInput(wait)) {
+                break;
+            }
+            runRootCommand(app);
+        }
+    }
+
+    /** records {@link ConsoleMetrics.Phase#FRAME} and ends the frame of {@link ConsoleApplication#getMetrics()} */
     public void display(ConsoleApplication app) {
+        ConsoleMetrics metrics = app.getMetrics();
+        long t = metrics.start();
         List<AttributedString> lines = new ArrayList<>(getLines(app));
         //getLines -> getCursorRowAndColumn
         int[] cursor = getCursorRowAndColumn(app);
+        if (app.isMetricsHud()) {
+            displayMetricsHud(app, lines);
+        }
 
         app.displayFromMode(lines, cursor[0], cursor[1]);
+        metrics.record(ConsoleMetrics.Phase.FRAME, t);
+        metrics.endFrame();
     }
 
+    /** overwrites the right side of the first line by {@link ConsoleMetrics#getSummary()} */
+    protected void displayMetricsHud(ConsoleApplication app, List<AttributedString> lines) {
+        int columns = app.getSize().getColumns();
+        String summary = app.getMetrics().getSummary();
+        if (summary.length() > columns) {
+            summary = summary.substring(0, Math.max(0, columns));
+        }
+        int left = columns - summary.length();
+        AttributedString line = lines.isEmpty() ? AttributedString.EMPTY : lines.get(0);
+        AttributedStringBuilder buf = new AttributedStringBuilder(columns);
+        buf.append(line.columnSubSequence(0, left));
+        while (buf.columnLength() < left) {
+            buf.append(' ');
+        }
+        buf.append(summary, AttributedStyle.DEFAULT.inverse());
+        if (lines.isEmpty()) {
+            lines.add(buf.toAttributedString());
+        } else {
+            lines.set(0, buf.toAttributedString());
+        }
+    }
 
+
+    /** records {@link ConsoleMetrics.Phase#COMMAND} and counts the command by its name */
     public void runRootCommand(ConsoleApplication app) {
         ConsoleCommand cmd = app.getReader().readBinding(commands);
+        ConsoleMetrics metrics = app.getMetrics();
+        long t = metrics.start();
         cmd.run(app);
+        metrics.record(ConsoleMetrics.Phase.COMMAND, t);
+        if (metrics.isEnabled()) {
+            metrics.countCommand(cmd instanceof ConsoleCommand.ConsoleCommandWithName ?
+                    ((ConsoleCommand.ConsoleCommandWithName) cmd).getName() : cmd.getClass().getSimpleName());
+        }
     }
 
-    /** the method is dispatched under a signal handler thread instead of main:
+    /** the method is dispatched under a signal handler thread instead of main,
+     *    or from {@link ConsoleApplication#updateSizeFromMode()} in the main thread if the render thread is enabled:
      *   you can call {@link #display(ConsoleApplication)}, but you will need to do synchronization.
      *   This can be override the method:
      *   <pre>
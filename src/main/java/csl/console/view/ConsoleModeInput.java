@@ -101,6 +101,7 @@ public class ConsoleModeInput extends ConsoleMode {
     @Override
     public void runRootCommand(ConsoleApplication app) {
         try {
+            app.awaitDisplayFromMode();
             String line = reader.readLine(prompt == null ? "" : prompt);
 
             //re-enable arrow keys
@@ -118,8 +119,7 @@ public class ConsoleModeInput extends ConsoleMode {
 
     @Override
     public void end(ConsoleApplication app) {
-        app.getDisplay().reset();
-        app.getDisplay().clear();
+        app.resetDisplayFromMode();
         app.setCurrentMode(backMode);
     }
 }
@@ -0,0 +1,155 @@
+package csl.console.view;
+
+import org.jline.keymap.KeyMap;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A mode showing the progress of a background task at the bottom line, over a snapshot of lines of the back mode.
+ * <pre>
+ *     ConsoleModeProgress progress = new ConsoleModeProgress(app);
+ *     task.start();
+ *     progress.setCurrentModeAndRunLoop(app, backMode, backMode.getLines(app), task,
+ *         (t, app) -&gt; { ... }); //called in the command thread after the task is done or canceled
+ * </pre>
+ *  The lines are not re-computed by the back mode while the task is running,
+ *   thus the task can use the state of the back mode.
+ *  The progress message is refreshed every {@link #getRefreshMillis()}, and q or ESC cancels the task.
+ */
+public class ConsoleModeProgress extends ConsoleMode {
+    protected ConsoleMode backMode;
+    protected List<AttributedString> lines = new ArrayList<>();
+    protected Task task;
+    protected FinishCallBack<Task> callBack;
+    protected long refreshMillis = 100;
+
+    public interface Task {
+        boolean isDone();
+        /** requests stopping the task: {@link #isDone()} will be true */
+        void cancel();
+        /** waits for the end of the task after {@link #isDone()} */
+        void await() throws InterruptedException;
+        String getProgressMessage();
+    }
+
+    public interface FinishCallBack<T extends Task> {
+        void apply(T task, ConsoleApplication app);
+    }
+
+    public ConsoleModeProgress() {}
+
+    public ConsoleModeProgress(ConsoleApplication app) {
+        init(app);
+    }
+
+    @Override
+    public String getName() {
+        return "Progress";
+    }
+
+    @Override
+    protected KeyMap<ConsoleCommand> initCommands(ConsoleApplication app) {
+        KeyMap<ConsoleCommand> keys = super.initCommands(app);
+        keys.setNomatch(a -> {});
+        return keys;
+    }
+
+    public ConsoleMode getBackMode() {
+        return backMode;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public void setRefreshMillis(long refreshMillis) {
+        this.refreshMillis = Math.max(1, refreshMillis);
+    }
+
+    public long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    /** the task needs to be started by the caller */
+    public <T extends Task> void setCurrentModeAndRunLoop(ConsoleApplication app, ConsoleMode backMode,
+                                                         List<AttributedString> lines, T task, FinishCallBack<T> callBack) {
+        this.backMode = backMode;
+        setTask(task, lines, callBack);
+        app.setCurrentMode(this);
+        app.runLoopOnTop();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Task> void setTask(T task, List<AttributedString> lines, FinishCallBack<T> callBack) {
+        this.lines = new ArrayList<>(lines);
+        this.task = task;
+        this.callBack = (FinishCallBack<Task>) callBack;
+    }
+
+    @Override
+    public List<AttributedString> getLines(ConsoleApplication app) {
+        List<AttributedString> ls = new ArrayList<>(lines);
+        int statusRow = app.getSize().getRows() - 1;
+        while (ls.size() <= statusRow) {
+            ls.add(AttributedString.EMPTY);
+        }
+        if (statusRow >= 0) {
+            ls.set(statusRow, getProgressLine(app));
+        }
+        return ls;
+    }
+
+    public AttributedString getProgressLine(ConsoleApplication app) {
+        String message = task == null ? "" : task.getProgressMessage();
+        int w = Math.max(0, app.getSize().getColumns() - 1);
+        if (message.length() > w) {
+            message = message.substring(0, w);
+        }
+        return new AttributedString(message, AttributedStyle.DEFAULT.inverse());
+    }
+
+    @Override
+    public int[] getCursorRowAndColumn(ConsoleApplication app) {
+        return new int[] {Math.max(0, app.getSize().getRows() - 1), 0};
+    }
+
+    /** finishes the mode if the task is done, or runs a command if a key is typed within the refresh interval */
+    @Override
+    public void runRootCommand(ConsoleApplication app) {
+        if (task.isDone()) {
+            finish(app);
+        } else if (app.hasPendingInput(refreshMillis)) {
+            super.runRootCommand(app);
+        }
+    }
+
+    /** commands are run one by one for refreshing the progress */
+    @Override
+    public void runPendingCommands(ConsoleApplication app) {
+    }
+
+    protected void finish(ConsoleApplication app) {
+        try {
+            task.await();
+        } catch (InterruptedException ie) {
+            app.error(ie);
+        }
+        app.setCurrentMode(backMode);
+        backMode.sizeUpdatedFromApp(app, app.getSize());
+        Task t = task;
+        task = null;
+        lines = new ArrayList<>();
+        callBack.apply(t, app);
+    }
+
+    /** cancels the task: the mode is finished after the task is done */
+    @Override
+    public void end(ConsoleApplication app) {
+        if (task != null) {
+            task.cancel();
+        }
+    }
+}
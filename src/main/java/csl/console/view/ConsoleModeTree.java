@@ -5,6 +5,7 @@ import org.jline.terminal.Size;
 import org.jline.utils.AttributedString;
 import org.jline.utils.InfoCmp;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,15 +29,35 @@ import java.util.List;
  *      treeMode.setCurrentModeAndRunLoop(app, rootItem);
  *  </pre>
  *
+ *  Enabling the row index ({@link TerminalTreeRowIndex}) for O(log n) jumps and the status line:
+ *  <pre>
+ *      new ConsoleModeTree(tree).withRowIndex(true);
+ *  </pre>
+ *
+ *  A search query is a literal, or it can have a prefix "ic:" for ignoring cases or "re:" for a regex
+ *   (by {@link TerminalSearchEngine#parse(String)}).
+ *  With {@link #withMatchIndex(boolean)}, a submitted search builds a {@link TerminalTreeMatchIndex},
+ *   and then next and previous search commands jump by the index and the status line shows "k/N" of matches.
+ *   The index is built in chunks on the command thread while no keys are typed (see {@link #runRootCommand(ConsoleApplication)}),
+ *   and it walks the entire tree: it is disabled by default as lazily loaded trees load all of their items.
+ *  <p>
+ *  If {@link ConsoleApplication#getMetrics()} is enabled at {@link #init(ConsoleApplication)},
+ *   the tree view records phases and calls to the tree are counted by {@link TerminalTreeCounting}.
+ *   The key 'm' toggles the metrics HUD.
  */
 public class ConsoleModeTree extends ConsoleMode {
     protected TerminalTreeView treeView;
     protected TerminalTree tree;
     protected String name = "";
+    protected boolean rowIndex;
+    protected boolean matchIndex;
+    protected long matchIndexChunkMillis = 50;
+    protected int pageSize;
 
     protected ConsoleModeHelp help;
     protected ConsoleModeMessage message;
     protected ConsoleModeInput search;
+    protected ConsoleModeProgress progress;
 
     public ConsoleModeTree(TerminalTree tree) {
         this.tree = tree;
@@ -56,6 +77,48 @@ public class ConsoleModeTree extends ConsoleMode {
         this.name = name;
     }
 
+    /** needs to be called before {@link #init(ConsoleApplication)} */
+    public ConsoleModeTree withRowIndex(boolean rowIndex) {
+        this.rowIndex = rowIndex;
+        return this;
+    }
+
+    public boolean isRowIndex() {
+        return rowIndex;
+    }
+
+    /** needs to be called before {@link #init(ConsoleApplication)}. the default is false */
+    public ConsoleModeTree withMatchIndex(boolean matchIndex) {
+        this.matchIndex = matchIndex;
+        return this;
+    }
+
+    public boolean isMatchIndex() {
+        return matchIndex;
+    }
+
+    /** the maximum time of building the match index between checks of inputs */
+    public void setMatchIndexChunkMillis(long matchIndexChunkMillis) {
+        this.matchIndexChunkMillis = Math.max(1, matchIndexChunkMillis);
+    }
+
+    public long getMatchIndexChunkMillis() {
+        return matchIndexChunkMillis;
+    }
+
+    /** the number of lines scrolled by page commands. non-positive means the half of the height */
+    public ConsoleModeTree withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        if (treeView != null) {
+            treeView.setPageSize(pageSize);
+        }
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
     public TerminalTreeView getTreeView() {
         return treeView;
     }
@@ -103,12 +166,20 @@ public class ConsoleModeTree extends ConsoleMode {
     @Override
     public void init(ConsoleApplication app) {
         super.init(app);
-        treeView = new TerminalTreeView(null, tree);
+        ConsoleMetrics metrics = app.getMetrics();
+        treeView = new TerminalTreeView(null, metrics.isEnabled() ? new TerminalTreeCounting(tree, metrics) : tree);
+        treeView.setMetrics(metrics);
+        if (rowIndex) {
+            treeView.setRowIndex(new TerminalTreeRowIndex(tree));
+        }
+        treeView.setPageSize(pageSize);
+        treeView.setMatchIndexEnabled(matchIndex);
         sizeUpdatedFromApp(app, app.getSize());
 
         initHelp(app);
         initMessage(app);
         initSearch(app);
+        initProgress(app);
     }
 
     protected void initHelp(ConsoleApplication app) {
@@ -123,6 +194,10 @@ public class ConsoleModeTree extends ConsoleMode {
         this.search = new ConsoleModeInput(app);
     }
 
+    protected void initProgress(ConsoleApplication app) {
+        this.progress = new ConsoleModeProgress(app);
+    }
+
     public void setCurrentModeAndRunLoop(ConsoleApplication app, TerminalItem origin) {
         app.setCurrentMode(this);
         setOrigin(origin);
@@ -142,6 +217,9 @@ public class ConsoleModeTree extends ConsoleMode {
     protected ConsoleCommand.ConsoleCommandWithName leftCommand;
     protected ConsoleCommand.ConsoleCommandWithName pageUpCommand;
     protected ConsoleCommand.ConsoleCommandWithName pageDownCommand;
+    protected ConsoleCommand.ConsoleCommandWithName topCommand;
+    protected ConsoleCommand.ConsoleCommandWithName bottomCommand;
+    protected ConsoleCommand.ConsoleCommandWithName lineCommand;
     protected ConsoleCommand.ConsoleCommandWithName parentCommand;
     protected ConsoleCommand.ConsoleCommandWithName firstChildCommand;
     protected ConsoleCommand.ConsoleCommandWithName lastChildCommand;
@@ -154,6 +232,7 @@ public class ConsoleModeTree extends ConsoleMode {
     protected ConsoleCommand.ConsoleCommandWithName debugLogCommand;
     protected ConsoleCommand.ConsoleCommandWithName helpCommand;
     protected ConsoleCommand.ConsoleCommandWithName infoCommand;
+    protected ConsoleCommand.ConsoleCommandWithName metricsHudCommand;
 
 
     @Override
@@ -187,16 +266,31 @@ public class ConsoleModeTree extends ConsoleMode {
                 .addKey(InfoCmp.Capability.key_left)
                 .bind(app, keys);
 
-        pageUpCommand = ConsoleCommand.command(a -> treeView.scrollUpPage(),
+        pageUpCommand = ConsoleCommand.command(a -> treeView.scrollBy(-treeView.getPageSize()),
                 "Page up", "")
                 .addKeys('u').addCtrlKey('U')
                 .bind(app, keys);
 
-        pageDownCommand = ConsoleCommand.command(a -> treeView.scrollDownPage(),
+        pageDownCommand = ConsoleCommand.command(a -> treeView.scrollBy(treeView.getPageSize()),
                 "Page down", "")
                 .addKeys('d').addCtrlKey('D')
                 .bind(app, keys);
 
+        topCommand = ConsoleCommand.command(a -> treeView.moveToTop(),
+                "Move to top", "")
+                .addKeys('g', '<')
+                .bind(app, keys);
+
+        bottomCommand = ConsoleCommand.command(a -> treeView.moveToEnd(),
+                "Move to end", "")
+                .addKeys('G', '>')
+                .bind(app, keys);
+
+        lineCommand = ConsoleCommand.command(this::startGoToLine,
+                "Go to line", "")
+                .addKeys(':')
+                .bind(app, keys);
+
         parentCommand = ConsoleCommand.command(a -> treeView.moveToParent(),
                 "Move to parent", "")
                 .addKeys('p')
@@ -219,11 +313,11 @@ public class ConsoleModeTree extends ConsoleMode {
                 .bind(app, keys);
 
         searchForwardCommand = ConsoleCommand.command(this::startSearchForward,
-                "Search forward", "")
+                "Search forward (ic: ignore case, re: regex)", "")
                 .addKeys('/')
                 .bind(app, keys);
         searchBackwardCommand = ConsoleCommand.command(this::startSearchForward,
-                "Search backward", "")
+                "Search backward (ic: ignore case, re: regex)", "")
                 .addKeys('?')
                 .bind(app, keys);
         nextSearchCommand = ConsoleCommand.command(this::moveToNextSearch,
@@ -250,6 +344,11 @@ public class ConsoleModeTree extends ConsoleMode {
                 .addKeys('i', 'I')
                 .bind(app, keys);
 
+        metricsHudCommand = ConsoleCommand.command(ConsoleApplication::toggleMetricsHud,
+                "Metrics HUD", "")
+                .addKeys('m')
+                .bind(app, keys);
+
         return keys;
     }
 
@@ -259,6 +358,21 @@ public class ConsoleModeTree extends ConsoleMode {
         treeView.setHeight(size.getRows());
     }
 
+    /** while the match index is building, builds a chunk of the index if no key is typed within 1ms,
+     *   and then the frame is displayed again for the progress. otherwise runs a command */
+    @Override
+    public void runRootCommand(ConsoleApplication app) {
+        if (treeView.isMatchIndexBuilding() && !treeView.isSearchRunning() && !app.hasPendingInput(1)) {
+            long deadline = System.nanoTime() + matchIndexChunkMillis * 1000_000L;
+            boolean done;
+            do {
+                done = treeView.buildMatchIndex(1024);
+            } while (!done && System.nanoTime() < deadline);
+        } else {
+            super.runRootCommand(app);
+        }
+    }
+
     @Override
     public int[] getCursorRowAndColumn(ConsoleApplication app) {
         return new int[] {treeView.getCursorLine(), 0};
@@ -266,7 +380,61 @@ public class ConsoleModeTree extends ConsoleMode {
 
     @Override
     public List<AttributedString> getLines(ConsoleApplication app) {
-        return treeView.write().getLines();
+        List<AttributedString> lines = treeView.write().getLines();
+        AttributedString status = getStatusLine(app);
+        if (status != null) {
+            lines = new ArrayList<>(lines);
+            int statusRow = app.getSize().getRows() - 1;
+            while (lines.size() < statusRow) {
+                lines.add(AttributedString.EMPTY);
+            }
+            if (statusRow >= 0 && lines.size() == statusRow) {
+                lines.add(status);
+            }
+        }
+        return lines;
+    }
+
+    /** the bottom line of the screen, or null if nothing to show.
+     *  it shows "k/N" of the match index, and the row of the cursor with the row index */
+    public AttributedString getStatusLine(ConsoleApplication app) {
+        String status = getMatchStatus();
+        long count = treeView.getRowCount();
+        if (count >= 0) {
+            status += (treeView.getCursorRow() + 1) + "/" + count + " " + treeView.getScrollPercent() + "%";
+        }
+        if (status.isEmpty()) {
+            return null;
+        }
+        int pad = Math.max(0, app.getSize().getColumns() - 1 - status.length());
+        StringBuilder buf = new StringBuilder(pad + status.length());
+        for (int i = 0; i < pad; ++i) {
+            buf.append(' ');
+        }
+        return new AttributedString(buf.append(status));
+    }
+
+    /**
+     * "match k/N  " if the cursor is on a match, "match -/N  " otherwise, "indexing n  " while building, or "" without the match index.
+     *  With the row index, the row of the next match is added if it is visible, e.g. "match 3/20 next:1234  "
+     */
+    public String getMatchStatus() {
+        TerminalTreeMatchIndex index = treeView.getMatchIndex();
+        if (index == null || index.isCanceled()) {
+            return "";
+        } else if (!index.isAvailable()) {
+            return "indexing " + index.getScanned() + "  ";
+        } else {
+            TerminalItem item = treeView.getItemOnCursor();
+            int k = index.indexOf(item);
+            String status = "match " + (k >= 0 ? Integer.toString(k + 1) : "-") + "/" + index.size();
+            int next = (k >= 0 ? (k + 1 < index.size() ? k + 1 : -1) : index.next(item));
+            long row = (next >= 0 ? treeView.getMatchRow(next) : -1);
+            if (row >= 0) {
+                status += " next:" + (row + 1);
+            }
+            return status + "  ";
+        }
     }
 
     public void showHelp(ConsoleApplication app) {
@@ -283,6 +451,27 @@ public class ConsoleModeTree extends ConsoleMode {
         message.setCurrentModeAndRunLoop(app, this);
     }
 
+    public void startGoToLine(ConsoleApplication app) {
+        search.setCurrentModeAndRunLoop(app, this, "Line:",
+                this::goToLine);
+    }
+
+    public void goToLine(String line, ConsoleApplication app) {
+        if (line == null || line.trim().isEmpty()) {
+            return;
+        }
+        long row;
+        try {
+            row = Long.parseLong(line.trim()) - 1;
+        } catch (NumberFormatException ex) {
+            row = -1;
+        }
+        if (!treeView.moveToRow(row)) {
+            message.setMessageLines(TerminalItemLine.toLines("Invalid line: " + line));
+            message.setCurrentModeAndRunLoop(app, this);
+        }
+    }
+
     public void startSearchForward(ConsoleApplication app) {
         search.setCurrentModeAndRunLoop(app, this, "Search-Forward:",
                 (line,app2) -> search(line, app2, true));
@@ -306,11 +495,50 @@ public class ConsoleModeTree extends ConsoleMode {
         moveToSearch(app, false);
     }
 
+    /**
+     * moves to a matched item on the display, or starts a {@link TerminalTreeSearch} for the rest of the tree.
+     *  While the search is running, the progress is shown at the status line by {@link ConsoleModeProgress},
+     *  and the result is delivered to {@link #moveToSearchFinished(TerminalTreeSearch, ConsoleApplication)}
+     */
     public void moveToSearch(ConsoleApplication app, boolean forward) {
+        if (treeView.getSearchEngine() == null) {
+            return;
+        }
+        TerminalTreeMatchIndex index = treeView.getMatchIndexIfAvailable();
+        if (index != null) {
+            moveToSearchByIndex(app, index, forward);
+            return;
+        }
         boolean found = forward ?
-                treeView.moveToSearchForward() :
-                treeView.moveToSearchBackward();
-        if (found) {
+                treeView.moveToSearchForwardOnDisplay() :
+                treeView.moveToSearchBackwardOnDisplay();
+        if (!found) {
+            List<AttributedString> lines = getLines(app);
+            TerminalTreeSearch s = new TerminalTreeSearch(treeView, treeView.getSearchStartItem(), forward);
+            s.start();
+            progress.setCurrentModeAndRunLoop(app, this, lines, s, this::moveToSearchFinished);
+        }
+    }
+
+    /** jumps to the next or previous item of the index in O(depth * log N) */
+    public void moveToSearchByIndex(ConsoleApplication app, TerminalTreeMatchIndex index, boolean forward) {
+        TerminalItem cursorItem = treeView.getItemOnCursor();
+        int k = forward ? index.next(cursorItem) : index.previous(cursorItem);
+        if (k >= 0) {
+            treeView.openAncestorsAndMoveCursorTo(index.get(k));
+        } else {
+            message.setMessageLines(TerminalItemLine.toLines("Not found"));
+            message.setCurrentModeAndRunLoop(app, this);
+        }
+    }
+
+    /** called after the search is done or canceled */
+    public void moveToSearchFinished(TerminalTreeSearch s, ConsoleApplication app) {
+        if (s.getError() != null) {
+            app.error(s.getError());
+        } else if (s.getResult() != null) {
+            treeView.openAncestorsAndMoveCursorTo(s.getResult());
+        } else if (!s.isCanceled()) {
             message.setMessageLines(TerminalItemLine.toLines("Not found"));
             message.setCurrentModeAndRunLoop(app, this);
         }
@@ -0,0 +1,214 @@
+package csl.console.view;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A thread pushing frames published by the command thread to a {@link Display}.
+ * <pre>
+ *     ConsoleRenderThread renderer = new ConsoleRenderThread(terminal, display);
+ *     renderer.start();
+ *     ...
+ *     renderer.publish(new ConsoleRenderThread.Frame(lines, row, column, size)); //never blocks
+ *     ...
+ *     renderer.close(); //renders the last frame and stops the thread
+ * </pre>
+ *  Only the latest published frame is rendered: frames published while rendering a previous one are skipped.
+ *  Rendering is limited to {@link #getMaxFramesPerSecond()}, and a slow terminal write never blocks the publisher.
+ *  The display is resized and cleared by the size of the frame,
+ *    and it is locked by <code>synchronized (display)</code> while rendering.
+ */
+public class ConsoleRenderThread extends Thread {
+    protected Terminal terminal;
+    protected Display display;
+    protected int maxFramesPerSecond = 60;
+
+    protected final Object lock = new Object();
+    protected Frame pending;
+    protected long publishedCount;
+    protected long renderedCount;
+    protected long skippedCount;
+    protected boolean closed;
+    protected volatile RuntimeException error;
+
+    protected Size renderedSize;
+    protected ConsoleMetrics metrics = new ConsoleMetrics(false);
+
+    /** an immutable snapshot of lines and the cursor */
+    public static final class Frame {
+        public final List<AttributedString> lines;
+        public final int cursorRow;
+        public final int cursorColumn;
+        public final Size size;
+
+        /** lines and size are copied */
+        public Frame(List<AttributedString> lines, int cursorRow, int cursorColumn, Size size) {
+            this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+            this.cursorRow = cursorRow;
+            this.cursorColumn = cursorColumn;
+            this.size = new Size(size.getColumns(), size.getRows());
+        }
+
+        @Override
+        public String toString() {
+            return "Frame(lines=" + lines.size() + ", cursor=" + cursorRow + ":" + cursorColumn + ", size=" + size + ")";
+        }
+    }
+
+    public ConsoleRenderThread(Terminal terminal, Display display) {
+        super("console-render");
+        this.terminal = terminal;
+        this.display = display;
+        setDaemon(true);
+    }
+
+    /** 0 means no limit */
+    public void setMaxFramesPerSecond(int maxFramesPerSecond) {
+        this.maxFramesPerSecond = Math.max(0, maxFramesPerSecond);
+    }
+
+    public int getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    /** records {@link ConsoleMetrics.Phase#DISPLAY} and {@link ConsoleMetrics.Phase#FLUSH} of rendering */
+    public void setMetrics(ConsoleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ConsoleMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Display getDisplay() {
+        return display;
+    }
+
+    /** replaces the pending frame by the frame */
+    public void publish(Frame frame) {
+        synchronized (lock) {
+            if (pending != null) {
+                ++skippedCount;
+            }
+            pending = frame;
+            ++publishedCount;
+            lock.notifyAll();
+        }
+    }
+
+    /** waits until the last published frame is rendered or skipped */
+    public void awaitRendered() throws InterruptedException {
+        synchronized (lock) {
+            while (pending != null && isAlive()) {
+                lock.wait(100);
+            }
+        }
+    }
+
+    /** stops the thread after rendering the pending frame */
+    public void close() throws InterruptedException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        join();
+    }
+
+    /** an exception thrown while rendering, which stops the thread */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public long getPublishedCount() {
+        synchronized (lock) {
+            return publishedCount;
+        }
+    }
+
+    public long getRenderedCount() {
+        synchronized (lock) {
+            return renderedCount;
+        }
+    }
+
+    public long getSkippedCount() {
+        synchronized (lock) {
+            return skippedCount;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            long last = 0;
+            while (true) {
+                Frame frame;
+                synchronized (lock) {
+                    while (pending == null && !closed) {
+                        lock.wait();
+                    }
+                    if (pending == null) {
+                        break;
+                    }
+                    frame = pending;
+                }
+                long interval = maxFramesPerSecond > 0 ? 1000_000_000L / maxFramesPerSecond : 0;
+                long wait = last + interval - System.nanoTime();
+                if (wait > 0 && !isClosed()) {
+                    Thread.sleep(wait / 1000_000L, (int) (wait % 1000_000L));
+                }
+                synchronized (lock) {
+                    frame = pending; //the latest after sleeping
+                }
+                last = System.nanoTime();
+                render(frame);
+                synchronized (lock) {
+                    if (pending == frame) {
+                        pending = null;
+                    }
+                    ++renderedCount;
+                    lock.notifyAll();
+                }
+            }
+        } catch (InterruptedException ie) {
+            //stop
+        } catch (RuntimeException ex) {
+            error = ex;
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    protected boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    protected void render(Frame frame) {
+        synchronized (display) {
+            if (renderedSize != null && !renderedSize.equals(frame.size)) {
+                display.clear();
+            }
+            renderedSize = frame.size;
+            int r = Math.max(1, frame.size.getRows());
+            int c = Math.max(1, frame.size.getColumns());
+            display.resize(r, c);
+            long t = metrics.start();
+            display.update(frame.lines, frame.size.cursorPos(frame.cursorRow, frame.cursorColumn));
+            metrics.record(ConsoleMetrics.Phase.DISPLAY, t);
+            t = metrics.start();
+            terminal.flush();
+            metrics.record(ConsoleMetrics.Phase.FLUSH, t);
+        }
+    }
+}
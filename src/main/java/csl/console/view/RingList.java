@@ -0,0 +1,208 @@
+package csl.console.view;
+
+import java.util.AbstractList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * a circular array list with constant-time insertion and removal at both ends.
+ * <pre>
+ *     RingList&lt;E&gt; list = new RingList&lt;&gt;(capacity);
+ *     list.addFirst(e); list.addLast(e);
+ *     list.removeFirst(); list.removeLast();
+ *     list.get(i); //random access
+ * </pre>
+ *  Insertion and removal at a middle index shifts the shorter side.
+ *  The capacity automatically grows if needed.
+ */
+public class RingList<E> extends AbstractList<E> implements RandomAccess {
+    protected Object[] elements;
+    protected int head;
+    protected int size;
+
+    public RingList() {
+        this(16);
+    }
+
+    public RingList(int capacity) {
+        elements = new Object[Math.max(1, capacity)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    protected int physicalIndex(int index) {
+        int i = head + index;
+        int cap = elements.length;
+        return i >= cap ? i - cap : i;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        checkIndex(index, size);
+        return (E) elements[physicalIndex(index)];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index, size);
+        int i = physicalIndex(index);
+        E old = (E) elements[i];
+        elements[i] = element;
+        return old;
+    }
+
+    public E getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    public E getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(size - 1);
+    }
+
+    public void addFirst(E element) {
+        ensureCapacity(size + 1);
+        head = (head == 0 ? elements.length : head) - 1;
+        elements[head] = element;
+        ++size;
+        ++modCount;
+    }
+
+    public void addLast(E element) {
+        ensureCapacity(size + 1);
+        elements[physicalIndex(size)] = element;
+        ++size;
+        ++modCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        E e = (E) elements[head];
+        elements[head] = null;
+        head = physicalIndex(1);
+        --size;
+        ++modCount;
+        if (size == 0) {
+            head = 0;
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int i = physicalIndex(size - 1);
+        E e = (E) elements[i];
+        elements[i] = null;
+        --size;
+        ++modCount;
+        if (size == 0) {
+            head = 0;
+        }
+        return e;
+    }
+
+    @Override
+    public boolean add(E element) {
+        addLast(element);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size + 1);
+        if (index == 0) {
+            addFirst(element);
+        } else if (index == size) {
+            addLast(element);
+        } else if (index < size / 2) {
+            //shift the front part to left
+            addFirst(null);
+            for (int i = 0; i < index; ++i) {
+                elements[physicalIndex(i)] = elements[physicalIndex(i + 1)];
+            }
+            elements[physicalIndex(index)] = element;
+        } else {
+            //shift the back part to right
+            addLast(null);
+            for (int i = size - 1; i > index; --i) {
+                elements[physicalIndex(i)] = elements[physicalIndex(i - 1)];
+            }
+            elements[physicalIndex(index)] = element;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E remove(int index) {
+        checkIndex(index, size);
+        if (index == 0) {
+            return removeFirst();
+        } else if (index == size - 1) {
+            return removeLast();
+        } else {
+            E e = (E) elements[physicalIndex(index)];
+            if (index < size / 2) {
+                for (int i = index; i > 0; --i) {
+                    elements[physicalIndex(i)] = elements[physicalIndex(i - 1)];
+                }
+                removeFirst();
+            } else {
+                for (int i = index; i < size - 1; ++i) {
+                    elements[physicalIndex(i)] = elements[physicalIndex(i + 1)];
+                }
+                removeLast();
+            }
+            return e;
+        }
+    }
+
+    /** removes elements from newSize to the end */
+    public void truncate(int newSize) {
+        while (size > newSize) {
+            removeLast();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            elements[physicalIndex(i)] = null;
+        }
+        head = 0;
+        size = 0;
+        ++modCount;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            Object[] es = new Object[Math.max(capacity, elements.length * 2)];
+            for (int i = 0; i < size; ++i) {
+                es[i] = elements[physicalIndex(i)];
+            }
+            elements = es;
+            head = 0;
+        }
+    }
+
+    private void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+    }
+}
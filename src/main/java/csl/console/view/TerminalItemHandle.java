@@ -0,0 +1,45 @@
+package csl.console.view;
+
+/**
+ * A lightweight item which is an integer id of an index-based tree,
+ *   like {@link TerminalTreeArray}. Handles are created on demand and compared by the id.
+ */
+public class TerminalItemHandle implements TerminalItem {
+    protected final TerminalTree tree;
+    protected final int id;
+
+    public TerminalItemHandle(TerminalTree tree, int id) {
+        this.tree = tree;
+        this.id = id;
+    }
+
+    public TerminalTree getTree() {
+        return tree;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (o instanceof TerminalItemHandle) {
+            TerminalItemHandle h = (TerminalItemHandle) o;
+            return id == h.id && tree == h.tree;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "Item(" + id + ")";
+    }
+}
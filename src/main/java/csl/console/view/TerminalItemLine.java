@@ -13,6 +13,8 @@ public class TerminalItemLine implements TerminalItem {
     protected List<List<AttributedString>> columnTokens;
     protected List<AttributedString> infoLines;
     protected TerminalItem parent;
+    /** the index in children of the parent, or -1 if unknown */
+    protected int siblingIndex = -1;
 
     public TerminalItemLine() {}
 
@@ -135,6 +137,15 @@ public class TerminalItemLine implements TerminalItem {
         this.parent = parent;
     }
 
+    /** maintained by {@link TerminalItemNode#setItemAsChild(TerminalItem, int)}. it might be stale if the children list is modified directly */
+    public int getSiblingIndex() {
+        return siblingIndex;
+    }
+
+    public void setSiblingIndex(int siblingIndex) {
+        this.siblingIndex = siblingIndex;
+    }
+
     @Override
     public String toString() {
         return "Line(" + toStringContents() + ")";
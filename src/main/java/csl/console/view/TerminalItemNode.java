@@ -8,6 +8,8 @@ import java.util.Optional;
 
 public class TerminalItemNode extends TerminalItemLine {
     protected List<TerminalItem> children;
+    /** used by {@link TerminalOpenState.NodeFlagOpenState} */
+    protected boolean open;
 
     public TerminalItemNode() {}
 
@@ -42,7 +44,11 @@ public class TerminalItemNode extends TerminalItemLine {
     public TerminalItemNode withChildren(List<TerminalItem> children) {
         this.children = children;
         if (children != null) {
-            children.forEach(this::setItemAsChild);
+            int i = 0;
+            for (TerminalItem child : children) {
+                setItemAsChild(child, i);
+                ++i;
+            }
         }
         return this;
     }
@@ -63,6 +69,8 @@ public class TerminalItemNode extends TerminalItemLine {
      *     Those methods eventually call {@link #setItemAsChild(TerminalItem)},
      *        which sets the parent of the given child to this node,
      *        only if the child is a {@link TerminalItemLine}.
+     *     The index of the child is also recorded for constant-time sibling navigation
+     *       ({@link TerminalItemLine#getSiblingIndex()}).
      */
     public List<TerminalItem> getChildren() {
         return children;
@@ -70,7 +78,7 @@ public class TerminalItemNode extends TerminalItemLine {
 
     /** returns item */
     public TerminalItem addChild(TerminalItem item) {
-        setItemAsChild(item);
+        setItemAsChild(item, children == null ? 0 : children.size());
         if (children == null) {
             children = new ArrayList<>();
         }
@@ -79,9 +87,15 @@ public class TerminalItemNode extends TerminalItemLine {
     }
 
     public void setItemAsChild(TerminalItem item) {
+        setItemAsChild(item, -1);
+    }
+
+    /** siblingIndex is the index of the item in the children, or -1 if unknown */
+    public void setItemAsChild(TerminalItem item, int siblingIndex) {
         if (item instanceof TerminalItemLine) {
             TerminalItemLine line = (TerminalItemLine) item;
             line.withParent(this);
+            line.setSiblingIndex(siblingIndex);
         }
     }
 
@@ -92,6 +106,14 @@ public class TerminalItemNode extends TerminalItemLine {
         return items;
     }
 
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void setOpen(boolean open) {
+        this.open = open;
+    }
+
     @Override
     public String toString() {
         return "Node(" + toStringContents() + ", children=" +
@@ -2,6 +2,7 @@ package csl.console.view;
 
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStringCached;
 import org.jline.utils.AttributedStyle;
 
 import java.util.ArrayList;
@@ -38,6 +39,10 @@ import java.util.List;
  *    =&gt; //scrolling to the right
  *     [ lineNum:|...play the full words due to the width. But, you do not want to scroll lineNu...]
  * </pre>
+ *
+ *  An instance can be reused for next frames by {@link #reset(int)}:
+ *   the line builder and the list of lines are recycled, and padding is appended from a prebuilt string of spaces.
+ *   Lines obtained by {@link #getLines()} are immutable, but the list is cleared by the next reset.
  */
 public class TerminalLineColumnsWriting {
     protected List<AttributedString> lines;
@@ -55,6 +60,9 @@ public class TerminalLineColumnsWriting {
 
     protected int lineCursorX;
 
+    /** spaces for {@link #appendSpace(int)} */
+    protected AttributedString padding = AttributedString.EMPTY;
+
     public TerminalLineColumnsWriting(int width, int height) {
         this(new ArrayList<>(height), width);
     }
@@ -67,6 +75,9 @@ public class TerminalLineColumnsWriting {
     public void reset(int width) {
         this.width = width;
         lines.clear();
+        lineX = 0;
+        lineY = 0;
+        lineCursorX = 0;
         initAppendable();
         nextColumn(0);
     }
@@ -75,8 +86,14 @@ public class TerminalLineColumnsWriting {
         return lines;
     }
 
+    /** creates the builder at first, and then clears it */
     protected void initAppendable() {
-        appendable = new AttributedStringBuilder(Math.min(width * 3, 2000));
+        if (appendable == null) {
+            appendable = new AttributedStringBuilder(Math.min(width * 3, 2000));
+        } else {
+            appendable.setLength(0);
+            appendable.style(AttributedStyle.DEFAULT);
+        }
     }
 
     /**
@@ -97,6 +114,15 @@ public class TerminalLineColumnsWriting {
         nextColumn(0);
     }
 
+    /** adds an already written line as the current line: the current line must be empty */
+    public void appendLine(AttributedString line) {
+        lineY++;
+        lineX = 0;
+
+        lines.add(line);
+        nextColumn(0);
+    }
+
     /**
      * <pre>
      *   case1:  [... lineX |---remainingOfColumnWidth----|    ] width
@@ -218,13 +244,24 @@ public class TerminalLineColumnsWriting {
         lineX += length;
         if (!advanceOnly) {
             if (leftOrRight) {
-                appendable.append(token.columnSubSequence(0, length));
+                appendColumns(token, 0, length);
             } else {
-                appendable.append(token.columnSubSequence(len - length, length));
+                appendColumns(token, len - length, len);
             }
         }
     }
 
+    /** appends the column range of the token. an ASCII {@link AttributedStringCached} is appended without a sub-sequence */
+    protected void appendColumns(AttributedString token, int start, int stop) {
+        if (token instanceof AttributedStringCached && ((AttributedStringCached) token).isAscii()) {
+            AttributedStringCached cached = (AttributedStringCached) token;
+            int b = cached.columnToIndex(start);
+            appendable.append(token, b, Math.max(b, cached.columnToIndex(stop)));
+        } else {
+            appendable.append(token.columnSubSequence(start, stop));
+        }
+    }
+
     public void appendOut(AttributedString token, boolean advanceOnly) {
         //nothing
     }
@@ -274,10 +311,36 @@ public class TerminalLineColumnsWriting {
         append(new AttributedStringBuilder().append(str).toAttributedString());
     }
 
+    /** appends n spaces with the default style, clipped as a token */
     public void appendSpace(int n) {
-        char[] ss = new char[n];
-        Arrays.fill(ss, ' ');
-        append(String.valueOf(ss));
+        int logicalTokenRangeStart = getLogicalColumnX();
+        int logicalTokenRangeEnd = logicalTokenRangeStart + n;
+        int start;
+        int stop;
+        if (isInsideOfDisplayedColumn(logicalTokenRangeStart, logicalTokenRangeEnd)) {
+            start = 0;
+            stop = n;
+        } else if (isRightPartOfDisplayedColumn(logicalTokenRangeStart, logicalTokenRangeEnd)) {
+            start = 0;
+            stop = getDisplayColumnEnd() - logicalTokenRangeStart;
+        } else if (isLeftPartOfDisplayedColumn(logicalTokenRangeStart, logicalTokenRangeEnd)) {
+            start = displayColumnStart - logicalTokenRangeStart;
+            stop = n;
+        } else {
+            return;
+        }
+        lineX += stop - start;
+        appendable.append(getPadding(stop - start), 0, stop - start);
+    }
+
+    /** a string of at least n spaces */
+    protected AttributedString getPadding(int n) {
+        if (padding.length() < n) {
+            char[] ss = new char[Math.max(n, Math.max(width, padding.length() * 2))];
+            Arrays.fill(ss, ' ');
+            padding = new AttributedString(String.valueOf(ss));
+        }
+        return padding;
     }
 
     public int getLineColumnRemaining() {
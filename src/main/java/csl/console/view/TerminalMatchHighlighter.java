@@ -0,0 +1,120 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringCached;
+import org.jline.utils.AttributedStyle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Highlighting of matches of a {@link TerminalSearchEngine} in tokens, with a cache of results for each token.
+ * <pre>
+ *     TerminalMatchHighlighter highlighter = new TerminalMatchHighlighter(engine, style);
+ *     TerminalMatchHighlighter.Highlighted h = highlighter.highlight(token);
+ *     h.getToken();  //the styled token
+ *     h.getRanges(); //{start0, end0, start1, end1, ...}
+ * </pre>
+ *  Matches of a token are found once by {@link TerminalSearchEngine#findAll(CharSequence)},
+ *   and the styled token is built from the found ranges
+ *   by {@link AttributedStringCached#styleRanges(AttributedString, int[], AttributedStyle)}.
+ *  The cache is keyed by contents of tokens and bounded by the capacity with the LRU order,
+ *   and a new instance is created for a new engine.
+ *  An instance without an engine does nothing: {@link #isEnabled()} is false.
+ */
+public class TerminalMatchHighlighter {
+    protected TerminalSearchEngine engine;
+    protected AttributedStyle style;
+    protected HighlightedCache cache;
+
+    public TerminalMatchHighlighter(TerminalSearchEngine engine, AttributedStyle style) {
+        this(engine, style, 4096);
+    }
+
+    public TerminalMatchHighlighter(TerminalSearchEngine engine, AttributedStyle style, int capacity) {
+        this.engine = engine;
+        this.style = style;
+        this.cache = new HighlightedCache(capacity);
+    }
+
+    public TerminalSearchEngine getEngine() {
+        return engine;
+    }
+
+    public AttributedStyle getStyle() {
+        return style;
+    }
+
+    /** true if the engine is non-null */
+    public boolean isEnabled() {
+        return engine != null;
+    }
+
+    /** true if the highlighter has the same engine and style */
+    public boolean isSame(TerminalSearchEngine engine, AttributedStyle style) {
+        return this.engine == engine && this.style.equals(style);
+    }
+
+    /** the styled token and matched ranges of the token. the result is cached */
+    public Highlighted highlight(AttributedString token) {
+        AttributedStringCached key = AttributedStringCached.of(token);
+        synchronized (this) {
+            Highlighted h = cache.get(key);
+            if (h == null) {
+                h = build(key);
+                cache.put(key, h);
+            }
+            return h;
+        }
+    }
+
+    protected Highlighted build(AttributedStringCached token) {
+        if (engine == null) {
+            return new Highlighted(token, TerminalSearchEngine.NO_RANGES);
+        }
+        int[] ranges = engine.findAll(token);
+        return new Highlighted(AttributedStringCached.styleRanges(token, ranges, style), ranges);
+    }
+
+    public synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    public static class Highlighted {
+        protected AttributedString token;
+        protected int[] ranges;
+
+        public Highlighted(AttributedString token, int[] ranges) {
+            this.token = token;
+            this.ranges = ranges;
+        }
+
+        public AttributedString getToken() {
+            return token;
+        }
+
+        /** {start0, end0, start1, end1, ...} of char indices. must not be modified */
+        public int[] getRanges() {
+            return ranges;
+        }
+
+        public boolean isMatched() {
+            return ranges.length > 0;
+        }
+    }
+
+    public static class HighlightedCache extends LinkedHashMap<AttributedString, Highlighted> {
+        private static final long serialVersionUID = 1L;
+        protected int capacity;
+
+        public HighlightedCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AttributedString, Highlighted> eldest) {
+            return size() > capacity;
+        }
+    }
+}
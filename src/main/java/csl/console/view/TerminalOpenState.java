@@ -0,0 +1,157 @@
+package csl.console.view;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * A store of opened items used by {@link TerminalTreeBase}.
+ *  The store is selected by overriding {@link TerminalTreeBase#initOpenItems()} or
+ *    by {@link TerminalTreeBase#withOpenItems(TerminalOpenState)}.
+ * <pre>
+ *     new TerminalTreeBase().withOpenItems(new TerminalOpenState.NodeFlagOpenState());
+ * </pre>
+ * <ul>
+ *     <li>{@link SetOpenState}: a {@link HashSet} relying on equals and hashCode of items. the default. </li>
+ *     <li>{@link IdentityOpenState}: an identity hash set, for items with expensive or unstable equals</li>
+ *     <li>{@link NodeFlagOpenState}: a flag field of {@link TerminalItemNode}
+ *             without any lookup; other items are stored in a set</li>
+ *     <li>{@link IdOpenState}: a {@link BitSet} of integer ids, like {@link TerminalItemHandle}</li>
+ * </ul>
+ */
+public interface TerminalOpenState {
+    void open(TerminalItem item);
+
+    void close(TerminalItem item);
+
+    boolean isOpen(TerminalItem item);
+
+    /** a store by a {@link Set} */
+    class SetOpenState implements TerminalOpenState {
+        protected Set<TerminalItem> items;
+
+        public SetOpenState() {
+            this(new HashSet<>());
+        }
+
+        public SetOpenState(Set<TerminalItem> items) {
+            this.items = items;
+        }
+
+        public Set<TerminalItem> getItems() {
+            return items;
+        }
+
+        @Override
+        public void open(TerminalItem item) {
+            items.add(item);
+        }
+
+        @Override
+        public void close(TerminalItem item) {
+            items.remove(item);
+        }
+
+        @Override
+        public boolean isOpen(TerminalItem item) {
+            return items.contains(item);
+        }
+    }
+
+    /** a store by the identity of items */
+    class IdentityOpenState extends SetOpenState {
+        public IdentityOpenState() {
+            super(Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+    }
+
+    /** a store by {@link TerminalItemNode#isOpen()}.
+     *   Note that the flag is shared by all trees displaying the node */
+    class NodeFlagOpenState implements TerminalOpenState {
+        protected TerminalOpenState others;
+
+        public NodeFlagOpenState() {
+            this(new SetOpenState());
+        }
+
+        /** others is used for items other than {@link TerminalItemNode} */
+        public NodeFlagOpenState(TerminalOpenState others) {
+            this.others = others;
+        }
+
+        @Override
+        public void open(TerminalItem item) {
+            if (item instanceof TerminalItemNode) {
+                ((TerminalItemNode) item).setOpen(true);
+            } else {
+                others.open(item);
+            }
+        }
+
+        @Override
+        public void close(TerminalItem item) {
+            if (item instanceof TerminalItemNode) {
+                ((TerminalItemNode) item).setOpen(false);
+            } else {
+                others.close(item);
+            }
+        }
+
+        @Override
+        public boolean isOpen(TerminalItem item) {
+            if (item instanceof TerminalItemNode) {
+                return ((TerminalItemNode) item).isOpen();
+            } else {
+                return others.isOpen(item);
+            }
+        }
+    }
+
+    /** a store by a {@link BitSet} of non-negative ids. items with negative ids are never opened */
+    class IdOpenState implements TerminalOpenState {
+        protected ToIntFunction<TerminalItem> idFunction;
+        protected BitSet ids = new BitSet();
+
+        /** uses {@link TerminalItemHandle#getId()} */
+        public IdOpenState() {
+            this(IdOpenState::getHandleId);
+        }
+
+        public IdOpenState(ToIntFunction<TerminalItem> idFunction) {
+            this.idFunction = idFunction;
+        }
+
+        public static int getHandleId(TerminalItem item) {
+            return item instanceof TerminalItemHandle ? ((TerminalItemHandle) item).getId() : -1;
+        }
+
+        public BitSet getIds() {
+            return ids;
+        }
+
+        @Override
+        public void open(TerminalItem item) {
+            int id = idFunction.applyAsInt(item);
+            if (id >= 0) {
+                ids.set(id);
+            }
+        }
+
+        @Override
+        public void close(TerminalItem item) {
+            int id = idFunction.applyAsInt(item);
+            if (id >= 0) {
+                ids.clear(id);
+            }
+        }
+
+        @Override
+        public boolean isOpen(TerminalItem item) {
+            int id = idFunction.applyAsInt(item);
+            return id >= 0 && ids.get(id);
+        }
+    }
+}
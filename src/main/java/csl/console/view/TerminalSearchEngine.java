@@ -0,0 +1,210 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringCached;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A matcher of search queries in tokens.
+ * <pre>
+ *     TerminalSearchEngine engine = TerminalSearchEngine.parse("ic:hello");
+ *     engine.find(token);    //true if the token contains "hello", "HELLO", ...
+ *     engine.findAll(token); //{start0, end0, start1, end1, ...}
+ * </pre>
+ *  {@link #parse(String)} selects an engine by the prefix of the query:
+ *  <ul>
+ *      <li>"re:regex": {@link RegexEngine} by {@link Pattern}</li>
+ *      <li>"ic:literal": {@link LiteralEngine} ignoring ASCII cases</li>
+ *      <li>"lit:literal" or no prefix: {@link LiteralEngine}</li>
+ *  </ul>
+ *  Engines are immutable and can be shared by threads.
+ */
+public interface TerminalSearchEngine {
+    int[] NO_RANGES = new int[0];
+
+    /** true if the text contains a match */
+    boolean find(CharSequence text);
+
+    /** char ranges {start0, end0, start1, end1, ...} of all matches in the text, or {@link #NO_RANGES} */
+    int[] findAll(CharSequence text);
+
+    /** null if the query is null or empty */
+    static TerminalSearchEngine parse(String query) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        } else if (query.startsWith("re:")) {
+            return regex(Pattern.compile(query.substring("re:".length())));
+        } else if (query.startsWith("ic:")) {
+            return literal(query.substring("ic:".length()), true);
+        } else if (query.startsWith("lit:")) {
+            return literal(query.substring("lit:".length()), false);
+        } else {
+            return literal(query, false);
+        }
+    }
+
+    /** null if the pattern is null */
+    static TerminalSearchEngine regex(Pattern pattern) {
+        return pattern == null ? null : new RegexEngine(pattern);
+    }
+
+    /** null if the literal is empty */
+    static TerminalSearchEngine literal(String literal, boolean ignoreCase) {
+        return literal.isEmpty() ? null : new LiteralEngine(literal, ignoreCase);
+    }
+
+    class RegexEngine implements TerminalSearchEngine {
+        protected Pattern pattern;
+
+        public RegexEngine(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        @Override
+        public boolean find(CharSequence text) {
+            return pattern.matcher(text).find();
+        }
+
+        @Override
+        public int[] findAll(CharSequence text) {
+            Matcher m = pattern.matcher(text);
+            if (!m.find()) {
+                return NO_RANGES;
+            }
+            List<int[]> found = new ArrayList<>();
+            do {
+                found.add(new int[] {m.start(), m.end()});
+            } while (m.find());
+            int[] ranges = new int[found.size() * 2];
+            for (int i = 0, l = found.size(); i < l; ++i) {
+                ranges[i * 2] = found.get(i)[0];
+                ranges[i * 2 + 1] = found.get(i)[1];
+            }
+            return ranges;
+        }
+
+        @Override
+        public String toString() {
+            return "re:" + pattern;
+        }
+    }
+
+    /**
+     * A Boyer-Moore-Horspool search of a literal, reading chars of {@link AttributedString}s directly
+     *  by {@link AttributedStringCached#getBuffer(AttributedString)}.
+     *  The skip table has 256 entries indexed by the low byte of a char:
+     *   colliding chars share the minimum shift, which is always safe.
+     *  With ignoreCase, only ASCII letters are folded.
+     */
+    class LiteralEngine implements TerminalSearchEngine {
+        protected String literal;
+        protected boolean ignoreCase;
+        /** the folded literal */
+        protected char[] needle;
+        protected int[] shift = new int[256];
+
+        public LiteralEngine(String literal, boolean ignoreCase) {
+            this.literal = literal;
+            this.ignoreCase = ignoreCase;
+            needle = literal.toCharArray();
+            int m = needle.length;
+            for (int i = 0; i < m; ++i) {
+                needle[i] = fold(needle[i]);
+            }
+            Arrays.fill(shift, m);
+            for (int i = 0; i < m - 1; ++i) {
+                int k = needle[i] & 0xFF;
+                shift[k] = Math.min(shift[k], m - 1 - i);
+            }
+        }
+
+        public String getLiteral() {
+            return literal;
+        }
+
+        public boolean isIgnoreCase() {
+            return ignoreCase;
+        }
+
+        private char fold(char c) {
+            return ignoreCase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        @Override
+        public boolean find(CharSequence text) {
+            if (text instanceof AttributedString) {
+                AttributedString s = (AttributedString) text;
+                char[] buf = AttributedStringCached.getBuffer(s);
+                int start = AttributedStringCached.getStart(s);
+                return indexOf(buf, start, start + s.length()) >= 0;
+            } else {
+                char[] buf = text.toString().toCharArray();
+                return indexOf(buf, 0, buf.length) >= 0;
+            }
+        }
+
+        @Override
+        public int[] findAll(CharSequence text) {
+            char[] buf;
+            int start;
+            if (text instanceof AttributedString) {
+                buf = AttributedStringCached.getBuffer((AttributedString) text);
+                start = AttributedStringCached.getStart((AttributedString) text);
+            } else {
+                buf = text.toString().toCharArray();
+                start = 0;
+            }
+            int end = start + text.length();
+            int i = indexOf(buf, start, end);
+            if (i < 0) {
+                return NO_RANGES;
+            }
+            int[] ranges = new int[2];
+            int n = 0;
+            while (i >= 0) {
+                if (n + 2 > ranges.length) {
+                    ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                }
+                ranges[n++] = i - start;
+                ranges[n++] = i - start + needle.length;
+                i = indexOf(buf, i + needle.length, end);
+            }
+            return n == ranges.length ? ranges : Arrays.copyOf(ranges, n);
+        }
+
+        /** the index of the first match in buf[from, to), or -1 */
+        public int indexOf(char[] buf, int from, int to) {
+            char[] needle = this.needle;
+            int last = needle.length - 1;
+            char lastChar = needle[last];
+            for (int i = from; i + last < to; ) {
+                char c = fold(buf[i + last]);
+                if (c == lastChar) {
+                    int j = last - 1;
+                    while (j >= 0 && fold(buf[i + j]) == needle[j]) {
+                        --j;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += shift[c & 0xFF];
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return (ignoreCase ? "ic:" : "lit:") + literal;
+        }
+    }
+}
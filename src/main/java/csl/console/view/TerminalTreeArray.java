@@ -0,0 +1,424 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedCharSequenceEx;
+import org.jline.utils.AttributedString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact tree storing the structure in primitive arrays and texts in shared buffers.
+ *  Items are {@link TerminalItemHandle}s created on demand.
+ * <pre>
+ *     TerminalTreeArray tree = new TerminalTreeArray();
+ *     int root = tree.addNode(-1, "root");
+ *     int child = tree.addNode(root, "col1", "col2");
+ *     tree.addNode(root, columnTokens); //List&lt;List&lt;AttributedString&gt;&gt;
+ *
+ *     ConsoleModeTree.start(tree, name, tree.getItem(root));
+ * </pre>
+ *
+ * <ul>
+ *     <li>node arrays: parent, first-child, last-child, next-sibling, previous-sibling, sibling-index, depth and first-token.
+ *          Links are node ids or -1.</li>
+ *     <li>token arrays: first-run and flags (whether the token starts a column).
+ *          Tokens of a node are contiguous and end at the first-token of the next node. </li>
+ *     <li>run arrays: first-char and style code. A run is a range of chars with a same style,
+ *           and runs of a token end at the first-run of the next token. </li>
+ *     <li>a char array shared by all runs</li>
+ * </ul>
+ *  Column tokens are materialized only when {@link #getColumnTokens(TerminalItem)} is called.
+ *  Nodes can only be appended.
+ */
+public class TerminalTreeArray extends TerminalTreeBase {
+    protected int size;
+    protected int[] parents;
+    protected int[] firstChildren;
+    protected int[] lastChildren;
+    protected int[] nextSiblings;
+    protected int[] previousSiblings;
+    protected int[] siblingIndices;
+    protected int[] depths;
+    protected int[] firstTokens;
+
+    protected int tokenSize;
+    protected int[] tokenFirstRuns;
+    protected byte[] tokenFlags;
+
+    protected int runSize;
+    protected int[] runFirstChars;
+    protected int[] runStyles;
+
+    protected int charSize;
+    protected char[] chars;
+
+    public static final byte TOKEN_FLAG_COLUMN_START = 1;
+
+    public TerminalTreeArray() {
+        this(1024);
+    }
+
+    public TerminalTreeArray(int capacity) {
+        capacity = Math.max(1, capacity);
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        lastChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        previousSiblings = new int[capacity];
+        siblingIndices = new int[capacity];
+        depths = new int[capacity];
+        firstTokens = new int[capacity];
+
+        tokenFirstRuns = new int[capacity];
+        tokenFlags = new byte[capacity];
+
+        runFirstChars = new int[capacity];
+        runStyles = new int[capacity];
+
+        chars = new char[capacity * 8];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /////////////////////////////////
+
+    /** parent is -1 for a root. each column is a single token without styles. returns the id of the new node */
+    public int addNode(int parent, String... columns) {
+        int id = addNode(parent);
+        for (String column : columns) {
+            addToken(column, 0, column.length(), true);
+        }
+        return id;
+    }
+
+    /** parent is -1 for a root. returns the id of the new node */
+    public int addNode(int parent, List<List<AttributedString>> columnTokens) {
+        int id = addNode(parent);
+        for (List<AttributedString> column : columnTokens) {
+            boolean columnStart = true;
+            for (AttributedString token : column) {
+                addToken(token, columnStart);
+                columnStart = false;
+            }
+            if (columnStart) { //empty column
+                addToken("", 0, 0, true);
+            }
+        }
+        return id;
+    }
+
+    protected int addNode(int parent) {
+        int id = size;
+        ensureNodeCapacity(id + 1);
+        parents[id] = parent;
+        firstChildren[id] = -1;
+        lastChildren[id] = -1;
+        nextSiblings[id] = -1;
+        previousSiblings[id] = -1;
+        siblingIndices[id] = 0;
+        firstTokens[id] = tokenSize;
+        if (parent >= 0) {
+            depths[id] = depths[parent] + 1;
+            int last = lastChildren[parent];
+            if (last >= 0) {
+                nextSiblings[last] = id;
+                previousSiblings[id] = last;
+                siblingIndices[id] = siblingIndices[last] + 1;
+            } else {
+                firstChildren[parent] = id;
+            }
+            lastChildren[parent] = id;
+        } else {
+            depths[id] = 0;
+        }
+        ++size;
+        return id;
+    }
+
+    protected void addToken(CharSequence str, int start, int end, boolean columnStart) {
+        newToken(columnStart);
+        newRun(0);
+        appendChars(str, start, end);
+    }
+
+    protected void addToken(AttributedString token, boolean columnStart) {
+        newToken(columnStart);
+        int prevStyle = 0;
+        for (int i = 0, l = token.length(); i < l; ++i) {
+            int style = AttributedCharSequenceEx.styleCodeAt(token, i);
+            if (i == 0 || style != prevStyle) {
+                newRun(style);
+                prevStyle = style;
+            }
+            appendChar(token.charAt(i));
+        }
+        if (token.length() == 0) {
+            newRun(0);
+        }
+    }
+
+    protected int newToken(boolean columnStart) {
+        int t = tokenSize;
+        if (t >= tokenFirstRuns.length) {
+            int cap = grow(tokenFirstRuns.length, t + 1);
+            tokenFirstRuns = Arrays.copyOf(tokenFirstRuns, cap);
+            tokenFlags = Arrays.copyOf(tokenFlags, cap);
+        }
+        tokenFirstRuns[t] = runSize;
+        tokenFlags[t] = columnStart ? TOKEN_FLAG_COLUMN_START : 0;
+        ++tokenSize;
+        return t;
+    }
+
+    protected void newRun(int style) {
+        int r = runSize;
+        if (r >= runFirstChars.length) {
+            int cap = grow(runFirstChars.length, r + 1);
+            runFirstChars = Arrays.copyOf(runFirstChars, cap);
+            runStyles = Arrays.copyOf(runStyles, cap);
+        }
+        runFirstChars[r] = charSize;
+        runStyles[r] = style;
+        ++runSize;
+    }
+
+    protected void appendChars(CharSequence str, int start, int end) {
+        ensureCharCapacity(charSize + end - start);
+        for (int i = start; i < end; ++i) {
+            chars[charSize++] = str.charAt(i);
+        }
+    }
+
+    protected void appendChar(char c) {
+        ensureCharCapacity(charSize + 1);
+        chars[charSize++] = c;
+    }
+
+    protected void ensureNodeCapacity(int n) {
+        if (n > parents.length) {
+            int cap = grow(parents.length, n);
+            parents = Arrays.copyOf(parents, cap);
+            firstChildren = Arrays.copyOf(firstChildren, cap);
+            lastChildren = Arrays.copyOf(lastChildren, cap);
+            nextSiblings = Arrays.copyOf(nextSiblings, cap);
+            previousSiblings = Arrays.copyOf(previousSiblings, cap);
+            siblingIndices = Arrays.copyOf(siblingIndices, cap);
+            depths = Arrays.copyOf(depths, cap);
+            firstTokens = Arrays.copyOf(firstTokens, cap);
+        }
+    }
+
+    protected void ensureCharCapacity(int n) {
+        if (n > chars.length) {
+            chars = Arrays.copyOf(chars, grow(chars.length, n));
+        }
+    }
+
+    protected static int grow(int current, int required) {
+        long cap = Math.max(required, current + (current >> 1) + 16L);
+        return (int) Math.min(Integer.MAX_VALUE - 8, cap);
+    }
+
+    /** shrinks all arrays to their sizes */
+    public void trimToSize() {
+        parents = Arrays.copyOf(parents, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        lastChildren = Arrays.copyOf(lastChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        previousSiblings = Arrays.copyOf(previousSiblings, size);
+        siblingIndices = Arrays.copyOf(siblingIndices, size);
+        depths = Arrays.copyOf(depths, size);
+        firstTokens = Arrays.copyOf(firstTokens, size);
+        tokenFirstRuns = Arrays.copyOf(tokenFirstRuns, tokenSize);
+        tokenFlags = Arrays.copyOf(tokenFlags, tokenSize);
+        runFirstChars = Arrays.copyOf(runFirstChars, runSize);
+        runStyles = Arrays.copyOf(runStyles, runSize);
+        chars = Arrays.copyOf(chars, charSize);
+    }
+
+    /////////////////////////////////
+
+    /** null if id is -1 */
+    public TerminalItemHandle getItem(int id) {
+        return id < 0 ? null : new TerminalItemHandle(this, id);
+    }
+
+    /** -1 if the item is not a handle of this tree */
+    public int getId(TerminalItem item) {
+        if (item instanceof TerminalItemHandle && ((TerminalItemHandle) item).getTree() == this) {
+            return ((TerminalItemHandle) item).getId();
+        } else {
+            return -1;
+        }
+    }
+
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    public int getFirstChild(int id) {
+        return firstChildren[id];
+    }
+
+    public int getLastChild(int id) {
+        return lastChildren[id];
+    }
+
+    public int getNextSibling(int id) {
+        return nextSiblings[id];
+    }
+
+    public int getPreviousSibling(int id) {
+        return previousSiblings[id];
+    }
+
+    /** the index of the node in its siblings */
+    public int getSiblingIndex(int id) {
+        return siblingIndices[id];
+    }
+
+    public int getDepth(int id) {
+        return depths[id];
+    }
+
+    /////////////////////////////////
+
+    @Override
+    public TerminalItem getParent(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(parents[id]);
+    }
+
+    /** constructs a new list for the children */
+    @Override
+    public List<TerminalItem> getChildren(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return null;
+        }
+        List<TerminalItem> cs = new ArrayList<>();
+        for (int c = firstChildren[id]; c >= 0; c = nextSiblings[c]) {
+            cs.add(getItem(c));
+        }
+        return cs;
+    }
+
+    @Override
+    public TerminalItem getFirstChild(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(firstChildren[id]);
+    }
+
+    @Override
+    public TerminalItem getLastChild(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(lastChildren[id]);
+    }
+
+    @Override
+    public TerminalItem getNextSibling(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(nextSiblings[id]);
+    }
+
+    @Override
+    public TerminalItem getPreviousSibling(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(previousSiblings[id]);
+    }
+
+    @Override
+    public int getDepth(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? super.getDepth(item) : depths[id];
+    }
+
+    @Override
+    public int getSiblingIndex(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? super.getSiblingIndex(item) : siblingIndices[id];
+    }
+
+    @Override
+    protected TerminalOpenState initOpenItems() {
+        return new TerminalOpenState.IdOpenState();
+    }
+
+    /////////////////////////////////
+
+    @Override
+    public List<List<AttributedString>> getColumnTokens(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return super.getColumnTokens(item);
+        }
+        return getColumnTokensWithIndents(item, getColumnTokens(id));
+    }
+
+    /** materializes column tokens of the node without indents */
+    public List<List<AttributedString>> getColumnTokens(int id) {
+        int start = firstTokens[id];
+        int end = (id + 1 < size ? firstTokens[id + 1] : tokenSize);
+        List<List<AttributedString>> columns = new ArrayList<>();
+        List<AttributedString> column = null;
+        for (int t = start; t < end; ++t) {
+            if (column == null || (tokenFlags[t] & TOKEN_FLAG_COLUMN_START) != 0) {
+                column = new ArrayList<>(1);
+                columns.add(column);
+            }
+            column.add(getToken(t));
+        }
+        return columns;
+    }
+
+    protected AttributedString getToken(int t) {
+        int runStart = tokenFirstRuns[t];
+        int runEnd = (t + 1 < tokenSize ? tokenFirstRuns[t + 1] : runSize);
+        int charStart = runFirstChars[runStart];
+        int charEnd = (runEnd < runSize ? runFirstChars[runEnd] : charSize);
+        int len = charEnd - charStart;
+        char[] buffer = Arrays.copyOfRange(chars, charStart, charEnd);
+        int[] style = new int[len];
+        for (int r = runStart; r < runEnd; ++r) {
+            int rs = runFirstChars[r] - charStart;
+            int re = (r + 1 < runSize ? runFirstChars[r + 1] : charSize) - charStart;
+            Arrays.fill(style, rs, re, runStyles[r]);
+        }
+        return AttributedCharSequenceEx.newAttributedString(buffer, style, 0, len);
+    }
+
+    /** the plain text of the node: columns are separated by a space */
+    public String getText(int id) {
+        int start = firstTokens[id];
+        int end = (id + 1 < size ? firstTokens[id + 1] : tokenSize);
+        StringBuilder buf = new StringBuilder();
+        for (int t = start; t < end; ++t) {
+            if (t > start && (tokenFlags[t] & TOKEN_FLAG_COLUMN_START) != 0) {
+                buf.append(' ');
+            }
+            int charStart = runFirstChars[tokenFirstRuns[t]];
+            int runEnd = (t + 1 < tokenSize ? tokenFirstRuns[t + 1] : runSize);
+            int charEnd = (runEnd < runSize ? runFirstChars[runEnd] : charSize);
+            buf.append(chars, charStart, charEnd - charStart);
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public List<AttributedString> getInfoLines(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return super.getInfoLines(item);
+        }
+        return TerminalItemLine.toLines(getText(id));
+    }
+
+    @Override
+    public String toString() {
+        return "TerminalTreeArray(nodes=" + size + ", tokens=" + tokenSize +
+                ", runs=" + runSize + ", chars=" + charSize + ")";
+    }
+}
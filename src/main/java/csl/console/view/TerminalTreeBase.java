@@ -23,7 +23,7 @@ import java.util.*;
  *  </ol>
  */
 public class TerminalTreeBase implements TerminalTree {
-    protected Set<TerminalItem> openItems = initOpenItems();
+    protected TerminalOpenState openItems = initOpenItems();
     protected boolean indent = true;
 
     @Override
@@ -122,15 +122,26 @@ public class TerminalTreeBase implements TerminalTree {
 
     //////////////////////////////////////
 
-    protected Set<TerminalItem> initOpenItems() {
-        return new HashSet<>();
+    /** the default is a hash set. {@link TerminalOpenState} has other strategies */
+    protected TerminalOpenState initOpenItems() {
+        return new TerminalOpenState.SetOpenState();
+    }
+
+    /** replaces the store: opened items in the previous store are not transferred */
+    public TerminalTreeBase withOpenItems(TerminalOpenState openItems) {
+        this.openItems = openItems;
+        return this;
+    }
+
+    public TerminalOpenState getOpenItems() {
+        return openItems;
     }
 
 
     @Override
     public TerminalItem open(TerminalItem item) {
         if (item != null) {
-            openItems.add(item);
+            openItems.open(item);
         }
         return item;
     }
@@ -138,7 +149,7 @@ public class TerminalTreeBase implements TerminalTree {
     @Override
     public TerminalItem close(TerminalItem item) {
         if (item != null) {
-            openItems.remove(item);
+            openItems.close(item);
         }
         return item;
     }
@@ -148,7 +159,7 @@ public class TerminalTreeBase implements TerminalTree {
         if (item == null) {
             return false;
         }
-        return openItems.contains(item);
+        return openItems.isOpen(item);
     }
 
     //////////////////////////////////////
@@ -217,7 +228,7 @@ public class TerminalTreeBase implements TerminalTree {
         if (cs == null) {
             return null;
         } else {
-            int i = cs.indexOf(item);
+            int i = indexOfChild(cs, item);
             if (i + 1 < cs.size()) {
                 return cs.get(i + 1);
             } else {
@@ -231,7 +242,7 @@ public class TerminalTreeBase implements TerminalTree {
         if (cs == null) {
             return null;
         } else {
-            int i = cs.indexOf(item);
+            int i = indexOfChild(cs, item);
             if (i - 1 >= 0) {
                 return cs.get(i - 1);
             } else {
@@ -240,6 +251,40 @@ public class TerminalTreeBase implements TerminalTree {
         }
     }
 
+    /** the index of the item in its siblings. subclasses of index-based trees override it by ids */
+    public int getSiblingIndex(TerminalItem item) {
+        return getSiblingIndexByParentChildren(this, item);
+    }
+
+    /** {@link #indexOfChild(List, TerminalItem)} in children of the parent,
+     *   or counts previous siblings if children of the parent are unavailable */
+    public static int getSiblingIndexByParentChildren(TerminalTree tree, TerminalItem item) {
+        TerminalItem parent = tree.getParent(item);
+        List<TerminalItem> cs = (parent == null ? null : tree.getChildren(parent));
+        if (cs != null) {
+            return indexOfChild(cs, item);
+        }
+        int n = 0;
+        for (TerminalItem s = tree.getPreviousSibling(item); s != null; s = tree.getPreviousSibling(s)) {
+            ++n;
+        }
+        return n;
+    }
+
+    /**
+     * uses {@link TerminalItemLine#getSiblingIndex()} if it is valid for cs,
+     *  otherwise falls back to {@link List#indexOf(Object)}
+     */
+    public static int indexOfChild(List<TerminalItem> cs, TerminalItem item) {
+        if (item instanceof TerminalItemLine && cs instanceof RandomAccess) {
+            int i = ((TerminalItemLine) item).getSiblingIndex();
+            if (i >= 0 && i < cs.size() && cs.get(i) == item) {
+                return i;
+            }
+        }
+        return cs.indexOf(item);
+    }
+
     @Override
     public TerminalItem getNext(TerminalItem item) {
         TerminalItem child = isOpen(item) ? getFirstChild(item) : null;
@@ -251,17 +296,14 @@ public class TerminalTreeBase implements TerminalTree {
     }
     @Override
     public TerminalItem getUpperNext(TerminalItem item) {
-        TerminalItem sibling = getNextSibling(item);
-        if (sibling != null) {
-            return sibling;
-        } else {
-            TerminalItem parent = getParent(item);
-            if (parent != null) {
-                return getUpperNext(parent);
-            } else {
-                return null;
+        while (item != null) {
+            TerminalItem sibling = getNextSibling(item);
+            if (sibling != null) {
+                return sibling;
             }
+            item = getParent(item);
         }
+        return null;
     }
 
     @Override
@@ -287,10 +329,10 @@ public class TerminalTreeBase implements TerminalTree {
 
     public TerminalItem getLast(TerminalItem item) {
         TerminalItem c = isOpen(item) ? getLastChild(item) : null;
-        if (c == null) {
-            return item;
-        } else {
-            return getLast(c);
+        while (c != null) {
+            item = c;
+            c = isOpen(item) ? getLastChild(item) : null;
         }
+        return item;
     }
 }
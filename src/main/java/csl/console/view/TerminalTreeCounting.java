@@ -0,0 +1,127 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedString;
+
+import java.util.List;
+
+/**
+ * A tree delegating to another tree and counting calls by {@link ConsoleMetrics#countTreeCall(String)}
+ *   with method names.
+ * <pre>
+ *     TerminalTree tree = new TerminalTreeCounting(srcTree, app.getMetrics());
+ * </pre>
+ */
+public class TerminalTreeCounting implements TerminalTree {
+    protected TerminalTree tree;
+    protected ConsoleMetrics metrics;
+
+    public TerminalTreeCounting(TerminalTree tree, ConsoleMetrics metrics) {
+        this.tree = tree;
+        this.metrics = metrics;
+    }
+
+    /** the delegated tree */
+    public TerminalTree getTree() {
+        return tree;
+    }
+
+    public ConsoleMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public List<List<AttributedString>> getColumnTokens(TerminalItem item) {
+        metrics.countTreeCall("getColumnTokens");
+        return tree.getColumnTokens(item);
+    }
+
+    @Override
+    public boolean[] getColumnTokenIndents(TerminalItem item, List<List<AttributedString>> columnTokens) {
+        metrics.countTreeCall("getColumnTokenIndents");
+        return tree.getColumnTokenIndents(item, columnTokens);
+    }
+
+    @Override
+    public List<AttributedString> getInfoLines(TerminalItem item) {
+        metrics.countTreeCall("getInfoLines");
+        return tree.getInfoLines(item);
+    }
+
+    @Override
+    public TerminalItem open(TerminalItem item) {
+        metrics.countTreeCall("open");
+        return tree.open(item);
+    }
+
+    @Override
+    public TerminalItem close(TerminalItem item) {
+        metrics.countTreeCall("close");
+        return tree.close(item);
+    }
+
+    @Override
+    public boolean isOpen(TerminalItem item) {
+        metrics.countTreeCall("isOpen");
+        return tree.isOpen(item);
+    }
+
+    @Override
+    public TerminalItem getParent(TerminalItem item) {
+        metrics.countTreeCall("getParent");
+        return tree.getParent(item);
+    }
+
+    @Override
+    public List<TerminalItem> getChildren(TerminalItem item) {
+        metrics.countTreeCall("getChildren");
+        return tree.getChildren(item);
+    }
+
+    @Override
+    public TerminalItem getFirstChild(TerminalItem item) {
+        metrics.countTreeCall("getFirstChild");
+        return tree.getFirstChild(item);
+    }
+
+    @Override
+    public TerminalItem getLastChild(TerminalItem item) {
+        metrics.countTreeCall("getLastChild");
+        return tree.getLastChild(item);
+    }
+
+    @Override
+    public TerminalItem getNextSibling(TerminalItem item) {
+        metrics.countTreeCall("getNextSibling");
+        return tree.getNextSibling(item);
+    }
+
+    @Override
+    public TerminalItem getPreviousSibling(TerminalItem item) {
+        metrics.countTreeCall("getPreviousSibling");
+        return tree.getPreviousSibling(item);
+    }
+
+    @Override
+    public TerminalItem getNext(TerminalItem item) {
+        metrics.countTreeCall("getNext");
+        return tree.getNext(item);
+    }
+
+    @Override
+    public TerminalItem getPrevious(TerminalItem item) {
+        metrics.countTreeCall("getPrevious");
+        return tree.getPrevious(item);
+    }
+
+    @Override
+    public TerminalItem getUpperNext(TerminalItem item) {
+        metrics.countTreeCall("getUpperNext");
+        return tree.getUpperNext(item);
+    }
+
+    @Override
+    public TerminalItem getUpperPrevious(TerminalItem item) {
+        metrics.countTreeCall("getUpperPrevious");
+        return tree.getUpperPrevious(item);
+    }
+}
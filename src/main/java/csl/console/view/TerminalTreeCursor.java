@@ -0,0 +1,290 @@
+package csl.console.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A stateful position in a {@link TerminalTree} which keeps the ancestor stack of the current item.
+ * <pre>
+ *     TerminalTreeCursor cursor = new TerminalTreeCursor(tree, item);
+ *     while (cursor.next()) { //same order as tree.getNext(item)
+ *         ... cursor.getItem() ...
+ *     }
+ * </pre>
+ *
+ *  Unlike {@link TerminalTree#getNext(TerminalItem)} and {@link TerminalTree#getPrevious(TerminalItem)},
+ *   moving the cursor does not call {@link TerminalTree#getParent(TerminalItem)},
+ *    and walking up to ancestors is done by popping the stack without recursion.
+ *  Thus, a traversal of n items costs O(n) in total regardless of the depth of the tree.
+ *  <p>
+ *  The constructor and {@link #reset(TerminalItem)} take O(depth) for collecting ancestors.
+ *  The cursor assumes that ancestors of the current item are not changed while moving.
+ *  <p>
+ *  For each level, the cursor keeps the children list of the parent obtained by {@link #getChildrenList(TerminalItem)}
+ *   with the position of the item in the list, and steps siblings by list.get(position &plusmn; 1).
+ *  The list is obtained once when the cursor enters the children of an item.
+ *  Items without such a list, like {@link TerminalItemHandle}s of index-based trees,
+ *   are stepped by {@link TerminalTree#getNextSibling(TerminalItem)} and {@link TerminalTree#getPreviousSibling(TerminalItem)}.
+ *  <p>
+ *  {@link LogicalCursor} walks all items of the tree regardless of the open state.
+ */
+public class TerminalTreeCursor {
+    protected TerminalTree tree;
+    /** path.get(0) is the top ancestor and the last element is the current item */
+    protected List<TerminalItem> path = new ArrayList<>();
+    /** siblings.get(i) is the children list of path.get(i - 1) containing path.get(i), or null if unavailable */
+    protected List<List<TerminalItem>> siblings = new ArrayList<>();
+    /** positions[i] is the index of path.get(i) in children of path.get(i - 1), or -1 if unknown */
+    protected int[] positions = new int[16];
+
+    public TerminalTreeCursor(TerminalTree tree, TerminalItem item) {
+        this.tree = tree;
+        reset(item);
+    }
+
+    protected TerminalTreeCursor(TerminalTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * a cursor treating all items as open: it visits children of closed items without opening them.
+     * <pre>
+     *     TerminalTreeCursor cursor = new TerminalTreeCursor.LogicalCursor(tree, item);
+     *     while (cursor.next()) { //pre-order of the entire tree
+     *         ...
+     *     }
+     * </pre>
+     */
+    public static class LogicalCursor extends TerminalTreeCursor {
+        public LogicalCursor(TerminalTree tree, TerminalItem item) {
+            super(tree, item);
+        }
+
+        protected LogicalCursor(TerminalTree tree) {
+            super(tree);
+        }
+
+        @Override
+        public TerminalTreeCursor copy() {
+            LogicalCursor c = new LogicalCursor(tree);
+            c.path.addAll(path);
+            c.siblings.addAll(siblings);
+            c.positions = Arrays.copyOf(positions, positions.length);
+            return c;
+        }
+
+        @Override
+        protected boolean isOpen(TerminalItem item) {
+            return true;
+        }
+    }
+
+    public TerminalTree getTree() {
+        return tree;
+    }
+
+    /** O(depth) */
+    public void reset(TerminalItem item) {
+        path.clear();
+        siblings.clear();
+        while (item != null) {
+            path.add(item);
+            item = tree.getParent(item);
+        }
+        int depth = path.size();
+        for (int i = 0, j = depth - 1; i < j; ++i, --j) { //reverse
+            TerminalItem t = path.get(i);
+            path.set(i, path.get(j));
+            path.set(j, t);
+        }
+        ensurePositions(depth);
+        for (int i = 0; i < depth; ++i) {
+            List<TerminalItem> cs = (i == 0 ? null : getChildrenList(path.get(i - 1)));
+            int p = (cs == null ? -1 : TerminalTreeBase.indexOfChild(cs, path.get(i)));
+            siblings.add(p < 0 ? null : cs);
+            positions[i] = p;
+        }
+    }
+
+    public TerminalTreeCursor copy() {
+        TerminalTreeCursor c = new TerminalTreeCursor(tree);
+        c.path.addAll(path);
+        c.siblings.addAll(siblings);
+        c.positions = Arrays.copyOf(positions, positions.length);
+        return c;
+    }
+
+    /** null if the cursor is constructed with null */
+    public TerminalItem getItem() {
+        return path.isEmpty() ? null : path.get(path.size() - 1);
+    }
+
+    /** 0 for the top ancestor */
+    public int getDepth() {
+        return path.size() - 1;
+    }
+
+    /** the index of the current item in its siblings, or -1 if unknown */
+    public int getPosition() {
+        return path.isEmpty() ? -1 : positions[path.size() - 1];
+    }
+
+    /** a copy of positions of the path: [0] is the position of the top ancestor, and the last is {@link #getPosition()} */
+    public int[] getPositions() {
+        return Arrays.copyOf(positions, path.size());
+    }
+
+    public TerminalItem getAncestor(int depth) {
+        return path.get(depth);
+    }
+
+    public TerminalItem getParent() {
+        return path.size() >= 2 ? path.get(path.size() - 2) : null;
+    }
+
+    /////////////////////////////////
+
+    /** moves to the same item as {@link TerminalTree#getNext(TerminalItem)}.
+     *  returns false without moving if there is no next item */
+    public boolean next() {
+        TerminalItem item = getItem();
+        if (item == null) {
+            return false;
+        }
+        if (isOpen(item)) {
+            List<TerminalItem> cs = getChildrenList(item);
+            TerminalItem child = (cs == null ? tree.getFirstChild(item) : (cs.isEmpty() ? null : cs.get(0)));
+            if (child != null) {
+                push(child, 0, cs);
+                return true;
+            }
+        }
+        return upperNext();
+    }
+
+    /** moves to the same item as {@link TerminalTree#getUpperNext(TerminalItem)}.
+     *  returns false without moving if there is no item */
+    public boolean upperNext() {
+        for (int level = path.size() - 1; level >= 0; --level) {
+            List<TerminalItem> cs = siblings.get(level);
+            int p = positions[level];
+            TerminalItem sibling;
+            if (cs != null) {
+                sibling = (p + 1 < cs.size() ? cs.get(p + 1) : null);
+            } else {
+                sibling = tree.getNextSibling(path.get(level));
+            }
+            if (sibling != null) {
+                pop(level + 1);
+                path.set(level, sibling);
+                positions[level] = (p >= 0 ? p + 1 : -1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** moves to the same item as {@link TerminalTree#getPrevious(TerminalItem)}.
+     *  returns false without moving if there is no previous item */
+    public boolean previous() {
+        TerminalItem item = getItem();
+        if (item == null) {
+            return false;
+        }
+        int level = path.size() - 1;
+        List<TerminalItem> cs = siblings.get(level);
+        int p = positions[level];
+        TerminalItem sibling;
+        if (cs != null) {
+            sibling = (p > 0 ? cs.get(p - 1) : null);
+        } else {
+            sibling = tree.getPreviousSibling(item);
+        }
+        if (sibling != null) {
+            path.set(level, sibling);
+            positions[level] = (p > 0 ? p - 1 : -1);
+            while (isOpen(sibling) && pushLastChild(sibling)) {
+                sibling = getItem();
+            }
+            return true;
+        } else if (level > 0) {
+            pop(level);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /** moves to the parent. returns false without moving if the current is the top */
+    public boolean parent() {
+        int level = path.size() - 1;
+        if (level > 0) {
+            pop(level);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /////////////////////////////////
+
+    protected boolean isOpen(TerminalItem item) {
+        return tree.isOpen(item);
+    }
+
+    /** pushes the last child of the item. returns false if it has no children */
+    protected boolean pushLastChild(TerminalItem item) {
+        List<TerminalItem> cs = getChildrenList(item);
+        if (cs == null) {
+            TerminalItem last = tree.getLastChild(item);
+            if (last != null) {
+                push(last, -1, null);
+                return true;
+            }
+        } else if (!cs.isEmpty()) {
+            push(cs.get(cs.size() - 1), cs.size() - 1, cs);
+            return true;
+        }
+        return false;
+    }
+
+    /** cs is the children list containing the item at the position, or null */
+    protected void push(TerminalItem item, int position, List<TerminalItem> cs) {
+        int level = path.size();
+        ensurePositions(level + 1);
+        path.add(item);
+        siblings.add(cs);
+        positions[level] = position;
+    }
+
+    /** removes elements at level and after */
+    protected void pop(int level) {
+        for (int i = path.size() - 1; i >= level; --i) {
+            path.remove(i);
+            siblings.remove(i);
+        }
+    }
+
+    protected void ensurePositions(int size) {
+        if (size > positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(size, positions.length * 2));
+        }
+    }
+
+    /** a random access children list of the item for stepping siblings, or null for stepping by the tree.
+     *  {@link TerminalItemHandle}s are excluded as their trees construct a new list for each call */
+    protected List<TerminalItem> getChildrenList(TerminalItem item) {
+        if (item instanceof TerminalItemHandle) {
+            return null;
+        }
+        List<TerminalItem> cs = tree.getChildren(item);
+        return cs instanceof RandomAccess ? cs : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Cursor(" + getItem() + ", depth=" + getDepth() + ")";
+    }
+}
@@ -0,0 +1,240 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedCharSequenceEx;
+import org.jline.utils.AttributedString;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Serializes a sub-tree of any {@link TerminalTree} into the file format of {@link TerminalTreeMapped}.
+ * <pre>
+ *     long nodes = new TerminalTreeFileWriter().write(tree, root, path);
+ * </pre>
+ *  The sub-tree is traversed with {@link TerminalTree#getFirstChild(TerminalItem)}
+ *   and {@link TerminalTree#getNextSibling(TerminalItem)} regardless of the open state.
+ *  The data section is streamed into the file, and node records are written into a temporary file
+ *   by their ids and appended at the end. The memory usage is proportional to the depth of the tree.
+ */
+public class TerminalTreeFileWriter {
+    protected OutputStream data;
+    protected long dataPosition;
+    protected FileChannel records;
+    protected ByteBuffer recordBuffer = ByteBuffer.allocate(TerminalTreeMapped.RECORD_SIZE);
+    protected int nodeCount;
+
+    /** returns the number of written nodes */
+    public long write(TerminalTree tree, TerminalItem root, Path file) throws IOException {
+        Path recordFile = Files.createTempFile("tree-records", ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+                 FileChannel recordChannel = FileChannel.open(recordFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                data = out;
+                records = recordChannel;
+                dataPosition = 0;
+                nodeCount = 0;
+
+                writeBytes(new byte[TerminalTreeMapped.HEADER_SIZE], TerminalTreeMapped.HEADER_SIZE); //reserved
+                if (root != null) {
+                    writeTree(tree, root);
+                }
+                while (dataPosition % TerminalTreeMapped.RECORD_SIZE != 0) {
+                    writeByte(0);
+                }
+                long nodeTableOffset = dataPosition;
+                out.flush();
+
+                recordChannel.position(0);
+                byte[] buf = new byte[1 << 16];
+                ByteBuffer bb = ByteBuffer.wrap(buf);
+                int n;
+                while ((n = recordChannel.read(bb)) > 0) {
+                    out.write(buf, 0, n);
+                    bb.clear();
+                }
+                out.flush();
+
+                writeHeader(file, nodeTableOffset);
+            }
+        } finally {
+            data = null;
+            records = null;
+            Files.deleteIfExists(recordFile);
+        }
+        return nodeCount;
+    }
+
+    protected void writeHeader(Path file, long nodeTableOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(TerminalTreeMapped.HEADER_SIZE);
+        header.putInt(TerminalTreeMapped.MAGIC)
+                .putInt(TerminalTreeMapped.VERSION)
+                .putLong(nodeCount)
+                .putLong(nodeTableOffset)
+                .putLong(TerminalTreeMapped.HEADER_SIZE);
+        header.flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                ch.write(header, header.position());
+            }
+        }
+    }
+
+    /** a node being written: the record is written after its next sibling and last child are determined */
+    protected static class Frame {
+        public int id;
+        public int parent;
+        public int depth;
+        public int firstChild = -1;
+        public int lastChild = -1;
+        public int nextSibling = -1;
+        public int previousSibling = -1;
+        public long dataOffset;
+        public TerminalItem nextSource;
+        /** the last finished child whose next sibling is not yet determined */
+        public Frame pendingChild;
+    }
+
+    protected void writeTree(TerminalTree tree, TerminalItem root) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(visit(tree, root, null));
+        while (!stack.isEmpty()) {
+            Frame f = stack.peek();
+            TerminalItem c = f.nextSource;
+            if (c != null) {
+                f.nextSource = tree.getNextSibling(c);
+                stack.push(visit(tree, c, f));
+            } else {
+                stack.pop();
+                if (f.pendingChild != null) {
+                    writeRecord(f.pendingChild);
+                    f.pendingChild = null;
+                }
+                Frame parent = stack.peek();
+                if (parent != null) {
+                    parent.pendingChild = f;
+                } else {
+                    writeRecord(f);
+                }
+            }
+        }
+    }
+
+    protected Frame visit(TerminalTree tree, TerminalItem item, Frame parent) throws IOException {
+        if (nodeCount == Integer.MAX_VALUE) {
+            throw new IOException("too many nodes");
+        }
+        Frame f = new Frame();
+        f.id = nodeCount++;
+        f.dataOffset = dataPosition;
+        f.nextSource = tree.getFirstChild(item);
+        if (parent == null) {
+            f.parent = -1;
+            f.depth = 0;
+        } else {
+            f.parent = parent.id;
+            f.depth = parent.depth + 1;
+            f.previousSibling = parent.lastChild;
+            if (parent.firstChild < 0) {
+                parent.firstChild = f.id;
+            }
+            parent.lastChild = f.id;
+            if (parent.pendingChild != null) {
+                parent.pendingChild.nextSibling = f.id;
+                writeRecord(parent.pendingChild);
+                parent.pendingChild = null;
+            }
+        }
+        writeData(getColumnTokens(tree, item));
+        return f;
+    }
+
+    /** column tokens without indents inserted by {@link TerminalTreeBase} */
+    protected List<List<AttributedString>> getColumnTokens(TerminalTree tree, TerminalItem item) {
+        List<List<AttributedString>> colTokens = tree.getColumnTokens(item);
+        if (tree instanceof TerminalTreeBase && ((TerminalTreeBase) tree).isIndent() && !colTokens.isEmpty()) {
+            colTokens = colTokens.subList(1, colTokens.size());
+        }
+        return colTokens;
+    }
+
+    protected void writeRecord(Frame f) throws IOException {
+        recordBuffer.clear();
+        recordBuffer.putInt(f.parent)
+                .putInt(f.firstChild)
+                .putInt(f.lastChild)
+                .putInt(f.nextSibling)
+                .putInt(f.previousSibling)
+                .putInt(f.depth)
+                .putLong(f.dataOffset);
+        recordBuffer.flip();
+        long pos = ((long) f.id) * TerminalTreeMapped.RECORD_SIZE;
+        while (recordBuffer.hasRemaining()) {
+            pos += records.write(recordBuffer, pos);
+        }
+    }
+
+    /////////////////////////////////
+
+    protected void writeData(List<List<AttributedString>> colTokens) throws IOException {
+        writeVarInt(colTokens.size());
+        for (List<AttributedString> column : colTokens) {
+            writeVarInt(column.size());
+            for (AttributedString token : column) {
+                writeToken(token);
+            }
+        }
+    }
+
+    protected void writeToken(AttributedString token) throws IOException {
+        int len = token.length();
+        int runs = 0;
+        for (int i = 0; i < len; ++i) {
+            if (i == 0 || AttributedCharSequenceEx.styleCodeAt(token, i) != AttributedCharSequenceEx.styleCodeAt(token, i - 1)) {
+                ++runs;
+            }
+        }
+        writeVarInt(runs);
+        int start = 0;
+        while (start < len) {
+            int style = AttributedCharSequenceEx.styleCodeAt(token, start);
+            int end = start + 1;
+            while (end < len && AttributedCharSequenceEx.styleCodeAt(token, end) == style) {
+                ++end;
+            }
+            writeVarInt(style);
+            writeVarInt(end - start);
+            start = end;
+        }
+        byte[] bytes = token.toString().getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, bytes.length);
+    }
+
+    protected void writeVarInt(int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    protected void writeByte(int b) throws IOException {
+        data.write(b);
+        ++dataPosition;
+    }
+
+    protected void writeBytes(byte[] bytes, int len) throws IOException {
+        data.write(bytes, 0, len);
+        dataPosition += len;
+    }
+}
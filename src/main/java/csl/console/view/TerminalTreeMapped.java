@@ -0,0 +1,347 @@
+package csl.console.view;
+
+import org.jline.utils.AttributedCharSequenceEx;
+import org.jline.utils.AttributedString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read-only tree memory-mapping a file written by {@link TerminalTreeFileWriter}.
+ * <pre>
+ *     new TerminalTreeFileWriter().write(srcTree, srcRoot, path);
+ *
+ *     TerminalTreeMapped tree = new TerminalTreeMapped(path);
+ *     ConsoleModeTree.start(tree, name, tree.getRoot());
+ * </pre>
+ *
+ * The file format (big-endian):
+ * <pre>
+ *     header (32 bytes): int MAGIC, int VERSION, long nodeCount, long nodeTableOffset, long dataOffset
+ *     data section:      node data ...
+ *     node table:        RECORD_SIZE bytes for each node id, starting at nodeTableOffset (aligned to RECORD_SIZE)
+ *
+ *     node record: int parent, int firstChild, int lastChild, int nextSibling, int previousSibling,
+ *                  int depth, long dataOffset ; links are node ids or -1, and the root is the id 0
+ *     node data:   varint columns, { varint tokens, { token } }
+ *     token:       varint runs, { varint styleCode, varint charLength }, varint utf8Length, utf8 bytes
+ * </pre>
+ *  Varints are unsigned LEB128 of 32 bit values.
+ *  Node ids are assigned in preorder.
+ *  <p>
+ *  The file is mapped by segments of {@link #SEGMENT_SIZE} bytes, and nothing is decoded at opening.
+ *  A node record is read for each link access, and column tokens are decoded for each
+ *   {@link #getColumnTokens(TerminalItem)}.
+ *  Items are {@link TerminalItemHandle}s and the open state is a bit-set of ids.
+ */
+public class TerminalTreeMapped extends TerminalTreeBase implements Closeable {
+    public static final int MAGIC = 0x43545245; //"CTRE"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 32;
+    public static final int SEGMENT_SHIFT = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    protected FileChannel channel;
+    protected MappedByteBuffer[] segments;
+    protected long fileSize;
+    protected long nodeCount;
+    protected long nodeTableOffset;
+    protected long dataOffset;
+
+    public TerminalTreeMapped(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            int n = (int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[n];
+            for (int i = 0; i < n; ++i) {
+                long pos = ((long) i) << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEGMENT_SIZE, fileSize - pos));
+            }
+            readHeader(file);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    protected void readHeader(Path file) throws IOException {
+        if (fileSize < HEADER_SIZE || segments[0].getInt(0) != MAGIC) {
+            throw new IOException("not a tree file: " + file);
+        }
+        int version = segments[0].getInt(4);
+        if (version != VERSION) {
+            throw new IOException("unsupported version " + version + ": " + file);
+        }
+        nodeCount = segments[0].getLong(8);
+        nodeTableOffset = segments[0].getLong(16);
+        dataOffset = segments[0].getLong(24);
+        if (nodeCount < 0 || nodeCount > Integer.MAX_VALUE ||
+                nodeTableOffset % RECORD_SIZE != 0 ||
+                nodeTableOffset + nodeCount * RECORD_SIZE > fileSize) {
+            throw new IOException("broken header: " + file);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /** null if the file has no nodes */
+    public TerminalItemHandle getRoot() {
+        return nodeCount == 0 ? null : getItem(0);
+    }
+
+    /////////////////////////////////
+
+    /** null if id is -1 */
+    public TerminalItemHandle getItem(int id) {
+        return id < 0 ? null : new TerminalItemHandle(this, id);
+    }
+
+    /** -1 if the item is not a handle of this tree */
+    public int getId(TerminalItem item) {
+        if (item instanceof TerminalItemHandle && ((TerminalItemHandle) item).getTree() == this) {
+            return ((TerminalItemHandle) item).getId();
+        } else {
+            return -1;
+        }
+    }
+
+    /** reads the field of the node record: the record never crosses a segment */
+    protected int getRecordInt(int id, int field) {
+        long pos = nodeTableOffset + ((long) id) * RECORD_SIZE + field * 4;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getInt((int) (pos & (SEGMENT_SIZE - 1)));
+    }
+
+    protected long getRecordDataOffset(int id) {
+        long pos = nodeTableOffset + ((long) id) * RECORD_SIZE + 24;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & (SEGMENT_SIZE - 1)));
+    }
+
+    public int getParent(int id) {
+        return getRecordInt(id, 0);
+    }
+
+    public int getFirstChild(int id) {
+        return getRecordInt(id, 1);
+    }
+
+    public int getLastChild(int id) {
+        return getRecordInt(id, 2);
+    }
+
+    public int getNextSibling(int id) {
+        return getRecordInt(id, 3);
+    }
+
+    public int getPreviousSibling(int id) {
+        return getRecordInt(id, 4);
+    }
+
+    public int getDepth(int id) {
+        return getRecordInt(id, 5);
+    }
+
+    /** the index of the node in its siblings, by counting previous siblings in records */
+    public int getSiblingIndex(int id) {
+        int n = 0;
+        for (int s = getPreviousSibling(id); s >= 0; s = getPreviousSibling(s)) {
+            ++n;
+        }
+        return n;
+    }
+
+    /////////////////////////////////
+
+    @Override
+    public TerminalItem getParent(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(getParent(id));
+    }
+
+    /** constructs a new list for the children */
+    @Override
+    public List<TerminalItem> getChildren(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return null;
+        }
+        List<TerminalItem> cs = new ArrayList<>();
+        for (int c = getFirstChild(id); c >= 0; c = getNextSibling(c)) {
+            cs.add(getItem(c));
+        }
+        return cs;
+    }
+
+    @Override
+    public TerminalItem getFirstChild(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(getFirstChild(id));
+    }
+
+    @Override
+    public TerminalItem getLastChild(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(getLastChild(id));
+    }
+
+    @Override
+    public TerminalItem getNextSibling(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(getNextSibling(id));
+    }
+
+    @Override
+    public TerminalItem getPreviousSibling(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? null : getItem(getPreviousSibling(id));
+    }
+
+    @Override
+    public int getDepth(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? super.getDepth(item) : getDepth(id);
+    }
+
+    @Override
+    public int getSiblingIndex(TerminalItem item) {
+        int id = getId(item);
+        return id < 0 ? super.getSiblingIndex(item) : getSiblingIndex(id);
+    }
+
+    @Override
+    protected TerminalOpenState initOpenItems() {
+        return new TerminalOpenState.IdOpenState();
+    }
+
+    /////////////////////////////////
+
+    @Override
+    public List<List<AttributedString>> getColumnTokens(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return super.getColumnTokens(item);
+        }
+        return getColumnTokensWithIndents(item, getColumnTokens(id));
+    }
+
+    /** decodes column tokens of the node without indents */
+    public List<List<AttributedString>> getColumnTokens(int id) {
+        DataReader in = new DataReader(getRecordDataOffset(id));
+        int columns = in.readVarInt();
+        List<List<AttributedString>> colTokens = new ArrayList<>(columns);
+        for (int i = 0; i < columns; ++i) {
+            int tokens = in.readVarInt();
+            List<AttributedString> column = new ArrayList<>(tokens);
+            for (int j = 0; j < tokens; ++j) {
+                column.add(in.readToken());
+            }
+            colTokens.add(column);
+        }
+        return colTokens;
+    }
+
+    /** the plain text of the node: columns are separated by a space */
+    public String getText(int id) {
+        StringBuilder buf = new StringBuilder();
+        for (List<AttributedString> column : getColumnTokens(id)) {
+            if (buf.length() > 0) {
+                buf.append(' ');
+            }
+            column.forEach(buf::append);
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public List<AttributedString> getInfoLines(TerminalItem item) {
+        int id = getId(item);
+        if (id < 0) {
+            return super.getInfoLines(item);
+        }
+        return TerminalItemLine.toLines(getText(id));
+    }
+
+    /** a sequential reader over segments */
+    public class DataReader {
+        protected long position;
+
+        public DataReader(long position) {
+            this.position = position;
+        }
+
+        public int readByte() {
+            ByteBuffer seg = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int b = seg.get((int) (position & (SEGMENT_SIZE - 1))) & 0xFF;
+            ++position;
+            return b;
+        }
+
+        public int readVarInt() {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IllegalStateException("broken varint at " + position);
+        }
+
+        public void readBytes(byte[] dst, int len) {
+            int done = 0;
+            while (done < len) {
+                ByteBuffer seg = segments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+                int offset = (int) (position & (SEGMENT_SIZE - 1));
+                int n = Math.min(len - done, seg.limit() - offset);
+                seg.position(offset);
+                seg.get(dst, done, n);
+                done += n;
+                position += n;
+            }
+        }
+
+        public AttributedString readToken() {
+            int runs = readVarInt();
+            int[] runStyles = new int[runs];
+            int[] runLengths = new int[runs];
+            for (int i = 0; i < runs; ++i) {
+                runStyles[i] = readVarInt();
+                runLengths[i] = readVarInt();
+            }
+            byte[] bytes = new byte[readVarInt()];
+            readBytes(bytes, bytes.length);
+            char[] chars = new String(bytes, StandardCharsets.UTF_8).toCharArray();
+            int[] style = new int[chars.length];
+            int start = 0;
+            for (int i = 0; i < runs && start < style.length; ++i) {
+                int end = Math.min(style.length, start + runLengths[i]);
+                Arrays.fill(style, start, end, runStyles[i]);
+                start = end;
+            }
+            return AttributedCharSequenceEx.newAttributedString(chars, style, 0, chars.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TerminalTreeMapped(nodes=" + nodeCount + ", size=" + fileSize + ")";
+    }
+}
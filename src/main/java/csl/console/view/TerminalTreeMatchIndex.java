@@ -0,0 +1,331 @@
+package csl.console.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An ordered list of all items matching a predicate in the entire tree under a root, built in chunks by the caller.
+ * <pre>
+ *     TerminalTreeMatchIndex index = new TerminalTreeMatchIndex(tree, root, item -&gt; ...);
+ *     while (!index.build(1000)) { //scans up to 1000 items for each call
+ *         ...handles inputs...
+ *     }
+ *     int k = index.next(cursorItem);  //O(depth * log N)
+ *     index.get(k);
+ *     index.indexOf(cursorItem);       //"k of N" with index.size()
+ *     ...
+ *     parent.addChild(newItem);
+ *     index.update(parent);            //re-scans only the sub-tree by following build calls
+ * </pre>
+ *  Matched items are held in pre-order with their paths of sibling indices from the root,
+ *   e.g. [0, 3, 1] is the 2nd child of the 4th child of the root.
+ *   The pre-order is the lexicographic order of paths, where an ancestor precedes its descendants,
+ *   thus an item is located by a binary search of its path, computed in O(depth) by parents.
+ *  The building walks by a {@link TerminalTreeCursor.LogicalCursor}, and it does not depend on the open state:
+ *   opening and closing items do not change the index.
+ *   Visible rows of matched items are obtained from a {@link TerminalTreeRowIndex} if it exists.
+ *  <p>
+ *  The index has no thread: {@link #build(int)} reads the tree on the calling thread,
+ *   which must be the thread reading the tree for the display (e.g. the command thread of {@link ConsoleModeTree}).
+ *   Reading lazily loaded trees constructs their children, thus concurrent reads by other threads are not safe.
+ *  Sub-trees passed to {@link #update(TerminalItem)} are queued and re-scanned by following {@link #build(int)} calls.
+ *   The result of a previous scan is used until the re-scan is finished.
+ */
+public class TerminalTreeMatchIndex {
+    protected TerminalTree tree;
+    protected TerminalItem root;
+    protected Predicate<TerminalItem> matcher;
+
+    protected List<TerminalItem> items = new ArrayList<>();
+    protected List<int[]> paths = new ArrayList<>();
+
+    /** the last argument of {@link #indexOf(TerminalItem)} and its result, cleared by changes of matched items */
+    protected TerminalItem lastItem;
+    protected int lastIndex;
+
+    /** tops of sub-trees waiting for scanning */
+    protected List<TerminalItem> pending = new ArrayList<>();
+    /** the scan in progress, or null */
+    protected Scan scan;
+
+    protected boolean canceled;
+    protected boolean done;
+    /** true after the first scan of the root is finished */
+    protected boolean built;
+    protected long scanned;
+
+    public TerminalTreeMatchIndex(TerminalTree tree, TerminalItem root, Predicate<TerminalItem> matcher) {
+        this.tree = tree;
+        this.root = root;
+        this.matcher = matcher;
+        if (root != null) {
+            pending.add(root);
+        } else {
+            done = true;
+        }
+    }
+
+    public TerminalItem getRoot() {
+        return root;
+    }
+
+    /** scans the entire tree at once */
+    public void build() {
+        build(Integer.MAX_VALUE);
+    }
+
+    /**
+     * scans up to maxItems items of pending sub-trees, and publishes the result of each finished sub-tree.
+     *  returns {@link #isDone()}: true if there is no more pending work or canceled
+     */
+    public boolean build(int maxItems) {
+        int n = 0;
+        while (!canceled && !done && n < maxItems) {
+            if (scan == null) {
+                if (pending.isEmpty()) {
+                    done = true;
+                    break;
+                }
+                scan = newScan(pending.remove(0));
+                if (scan == null) {
+                    continue;
+                }
+            }
+            n += scan.run(maxItems - n);
+            if (scan.finished) {
+                publish(scan);
+                scan = null;
+                done = pending.isEmpty();
+            }
+        }
+        return done || canceled;
+    }
+
+    /** a scan of the sub-tree of the top, or null if the top is not under the root */
+    protected Scan newScan(TerminalItem top) {
+        int[] path = pathOf(top);
+        return path == null ? null : new Scan(top, path);
+    }
+
+    /** replaces matched items in the range of the sub-tree of the scan.
+     *  It takes O(log N + (matched items of the sub-tree) + N) */
+    protected void publish(Scan s) {
+        int[] end = s.topPath.clone();
+        end[end.length - 1]++;
+        int lo = lowerBound(s.topPath);
+        int hi = lowerBound(end);
+        items.subList(lo, hi).clear();
+        paths.subList(lo, hi).clear();
+        items.addAll(lo, s.items);
+        paths.addAll(lo, s.paths);
+        lastItem = null;
+        if (s.top.equals(root)) {
+            built = true;
+        }
+    }
+
+    /** a walk of the sub-tree of a top item, collecting matched items */
+    protected class Scan {
+        protected TerminalItem top;
+        protected int[] topPath;
+        protected TerminalTreeCursor cursor;
+        protected int topDepth;
+        protected boolean finished;
+        protected List<TerminalItem> items = new ArrayList<>();
+        protected List<int[]> paths = new ArrayList<>();
+
+        public Scan(TerminalItem top, int[] topPath) {
+            this.top = top;
+            this.topPath = topPath;
+            cursor = new TerminalTreeCursor.LogicalCursor(tree, top);
+            topDepth = cursor.getDepth();
+        }
+
+        /** visits up to max items and returns the number of visited items */
+        public int run(int max) {
+            int n = 0;
+            while (n < max && !finished) {
+                TerminalItem item = cursor.getItem();
+                if (matcher.test(item)) {
+                    items.add(item);
+                    paths.add(concat(topPath, getPositions(cursor, topDepth + 1), topDepth + 1));
+                }
+                ++n;
+                ++scanned;
+                finished = !(cursor.next() && cursor.getDepth() > topDepth);
+            }
+            return n;
+        }
+    }
+
+    /** positions of the cursor, where unknown positions after from are obtained by {@link #getSiblingIndex(TerminalItem)} */
+    protected int[] getPositions(TerminalTreeCursor cursor, int from) {
+        int[] positions = cursor.getPositions();
+        for (int i = from; i < positions.length; ++i) {
+            if (positions[i] < 0) {
+                positions[i] = getSiblingIndex(cursor.getAncestor(i));
+            }
+        }
+        return positions;
+    }
+
+    private static int[] concat(int[] prefix, int[] positions, int from) {
+        int[] path = new int[prefix.length + Math.max(0, positions.length - from)];
+        System.arraycopy(prefix, 0, path, 0, prefix.length);
+        for (int i = from; i < positions.length; ++i) {
+            path[prefix.length + i - from] = positions[i];
+        }
+        return path;
+    }
+
+    /** stops the building: the index will never be available if it is not built yet */
+    public void cancel() {
+        canceled = true;
+        scan = null;
+        pending.clear();
+    }
+
+    /** true if the index was canceled */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /** true if there is no pending work */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** true if the entire tree has been scanned once and the index is not canceled.
+     *  The index might have pending updates: see {@link #isDone()} */
+    public boolean isAvailable() {
+        return built && !canceled;
+    }
+
+    /** the number of visited items by scans */
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * queues a re-scan of the sub-tree of the item, which must be under the root, after a structural change.
+     *  A scan in progress is continued, and the queued re-scan replaces its result for the sub-tree.
+     */
+    public void update(TerminalItem item) {
+        if (canceled || item == null) {
+            return;
+        }
+        if (!pending.contains(item)) {
+            pending.add(item);
+        }
+        done = false;
+    }
+
+    /////////////////////////////////
+
+    /** the number of matched items */
+    public int size() {
+        return items.size();
+    }
+
+    public TerminalItem get(int k) {
+        return items.get(k);
+    }
+
+    /** the index of the item, or -(insertion point) - 1 if it is not matched. -size()-1 if the item is not under the root.
+     *  The result for the last item is cached: repeated calls for an unmoved cursor take O(1) */
+    public int indexOf(TerminalItem item) {
+        if (item != null && item.equals(lastItem)) {
+            return lastIndex;
+        }
+        int[] path = pathOf(item);
+        int k = (path == null ? -items.size() - 1 : search(path));
+        lastItem = item;
+        lastIndex = k;
+        return k;
+    }
+
+    /** the index of the first matched item after the item in pre-order, or -1 */
+    public int next(TerminalItem item) {
+        int k = indexOf(item);
+        int n = (k >= 0 ? k + 1 : -k - 1);
+        return n < items.size() ? n : -1;
+    }
+
+    /** the index of the last matched item before the item in pre-order, or -1 */
+    public int previous(TerminalItem item) {
+        int k = indexOf(item);
+        return (k >= 0 ? k - 1 : -k - 2);
+    }
+
+    /** the visible row of the k-th matched item, or -1 if it is hidden or the rowIndex is null */
+    public long getRow(int k, TerminalTreeRowIndex rowIndex) {
+        return rowIndex == null ? -1 : rowIndex.getRow(get(k));
+    }
+
+    /////////////////////////////////
+
+    /** the path of sibling indices from the root, or null if the item is not under the root */
+    public int[] pathOf(TerminalItem item) {
+        int depth = 0;
+        TerminalItem p = item;
+        while (p != null && !p.equals(root)) {
+            p = tree.getParent(p);
+            ++depth;
+        }
+        if (p == null) {
+            return null;
+        }
+        int[] path = new int[depth + 1];
+        p = item;
+        for (int i = depth; i > 0; --i) {
+            path[i] = getSiblingIndex(p);
+            p = tree.getParent(p);
+        }
+        return path;
+    }
+
+    /** {@link TerminalItemHandle}s are resolved by ids of their trees ({@link TerminalTreeBase#getSiblingIndex(TerminalItem)}).
+     *  Other items are resolved by {@link TerminalTreeBase#getSiblingIndexByParentChildren(TerminalTree, TerminalItem)},
+     *   which verifies {@link TerminalItemLine#getSiblingIndex()} as it might be stale */
+    protected int getSiblingIndex(TerminalItem item) {
+        if (item instanceof TerminalItemHandle && ((TerminalItemHandle) item).getTree() instanceof TerminalTreeBase) {
+            return ((TerminalTreeBase) ((TerminalItemHandle) item).getTree()).getSiblingIndex(item);
+        }
+        return TerminalTreeBase.getSiblingIndexByParentChildren(tree, item);
+    }
+
+    /** same as {@link java.util.Collections#binarySearch(List, Object)} */
+    protected int search(int[] path) {
+        int k = lowerBound(path);
+        if (k < paths.size() && compare(paths.get(k), path) == 0) {
+            return k;
+        } else {
+            return -k - 1;
+        }
+    }
+
+    protected int lowerBound(int[] path) {
+        int lo = 0;
+        int hi = paths.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(paths.get(mid), path) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** pre-order: an ancestor (a prefix) precedes descendants */
+    public static int compare(int[] a, int[] b) {
+        for (int i = 0, n = Math.min(a.length, b.length); i < n; ++i) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
@@ -0,0 +1,346 @@
+package csl.console.view;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An optional order-statistic index over visible (expanded) rows of a {@link TerminalTree}.
+ * <pre>
+ *     TerminalTreeRowIndex index = new TerminalTreeRowIndex(tree);
+ *     view.setRowIndex(index); //the view notifies open/close via update(item)
+ *
+ *     index.getItemAt(row);    //item at the visible row
+ *     index.getRow(item);      //visible row of the item, or -1
+ *     index.getRowCount();
+ * </pre>
+ *
+ *  Each opened node holds an {@link Entry} with a Fenwick tree over sizes of its children,
+ *   where the size of a child is the number of its visible rows (1 if it is closed).
+ *  Both lookups descend (or ascend) the tree with a logarithmic search at each level,
+ *   and {@link #update(TerminalItem)} propagates a size change only to ancestors.
+ *  The initial construction visits entire visible rows once.
+ *  <p>
+ *  The root is the top ancestor whose parent is null.
+ *  If the tree is modified other than open and close, call {@link #invalidate()}.
+ */
+public class TerminalTreeRowIndex {
+    protected TerminalTree tree;
+    protected TerminalItem root;
+    protected Entry rootEntry;
+    protected boolean built;
+    protected Map<TerminalItem, Entry> entries = new HashMap<>();
+
+    public TerminalTreeRowIndex(TerminalTree tree) {
+        this.tree = tree;
+    }
+
+    public TerminalTree getTree() {
+        return tree;
+    }
+
+    public TerminalItem getRoot() {
+        return root;
+    }
+
+    public void setRoot(TerminalItem root) {
+        if (!Objects.equals(this.root, root)) {
+            this.root = root;
+            invalidate();
+        }
+    }
+
+    /** sets the top ancestor of the item as the root */
+    public void setRootFrom(TerminalItem item) {
+        if (item != null) {
+            TerminalItem parent = tree.getParent(item);
+            while (parent != null) {
+                item = parent;
+                parent = tree.getParent(item);
+            }
+        }
+        setRoot(item);
+    }
+
+    /** discards all entries: they will be re-constructed by a next query */
+    public void invalidate() {
+        entries.clear();
+        rootEntry = null;
+        built = false;
+    }
+
+    protected void buildRoot() {
+        if (!built) {
+            built = true;
+            rootEntry = (root == null ? null : build(root, null, 0));
+        }
+    }
+
+    /////////////////////////////////
+
+    /** the number of visible rows including the root */
+    public long getRowCount() {
+        buildRoot();
+        if (root == null) {
+            return 0;
+        } else {
+            return rootEntry == null ? 1 : rootEntry.size;
+        }
+    }
+
+    /** returns null if the row is out of range */
+    public TerminalItem getItemAt(long row) {
+        buildRoot();
+        if (root == null || row < 0) {
+            return null;
+        } else if (row == 0) {
+            return root;
+        }
+        Entry e = rootEntry;
+        long k = row - 1;
+        while (e != null && k < e.size - 1) {
+            int i = e.find(k);
+            long rem = k - e.prefix(i);
+            if (rem == 0) {
+                return e.children[i];
+            }
+            e = e.childEntries[i];
+            k = rem - 1;
+        }
+        return null;
+    }
+
+    /** returns -1 if the item is not visible from the root */
+    public long getRow(TerminalItem item) {
+        buildRoot();
+        if (root == null || item == null) {
+            return -1;
+        }
+        long row = 0;
+        while (!item.equals(root)) {
+            TerminalItem parent = tree.getParent(item);
+            Entry pe = (parent == null ? null : entries.get(parent));
+            if (pe == null) {
+                return -1;
+            }
+            int i = pe.indexOf(item);
+            if (i < 0) {
+                return -1;
+            }
+            row += 1 + pe.prefix(i);
+            item = parent;
+        }
+        return row;
+    }
+
+    /** the number of visible rows of the item including itself */
+    public long getSize(TerminalItem item) {
+        buildRoot();
+        Entry e = entries.get(item);
+        return e == null ? 1 : e.size;
+    }
+
+    /////////////////////////////////
+
+    /** needs to be called after the item is opened or closed */
+    public void update(TerminalItem item) {
+        if (item == null || !built) {
+            return;
+        }
+        boolean open = tree.isOpen(item);
+        Entry existing = entries.get(item);
+        if (item.equals(root)) {
+            if (open && existing == null) {
+                rootEntry = build(root, null, 0);
+            } else if (!open && existing != null) {
+                remove(existing);
+                rootEntry = null;
+            }
+            return;
+        }
+        TerminalItem parent = tree.getParent(item);
+        Entry pe = (parent == null ? null : entries.get(parent));
+        if (pe == null) { //invisible
+            if (existing != null) {
+                remove(existing);
+            }
+            return;
+        }
+        int i = pe.indexOf(item);
+        if (i < 0) {
+            invalidate();
+            return;
+        }
+        long oldSize = (existing == null ? 1 : existing.size);
+        if (open && existing == null) {
+            pe.childEntries[i] = build(item, pe, i);
+        } else if (!open && existing != null) {
+            remove(existing);
+            pe.childEntries[i] = null;
+        } else {
+            return;
+        }
+        long newSize = (pe.childEntries[i] == null ? 1 : pe.childEntries[i].size);
+        propagate(pe, i, newSize - oldSize);
+    }
+
+    protected void propagate(Entry e, int childIndex, long delta) {
+        while (e != null) {
+            e.add(childIndex, delta);
+            e.size += delta;
+            childIndex = e.indexInParent;
+            e = e.parent;
+        }
+    }
+
+    protected void remove(Entry top) {
+        Deque<Entry> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            Entry e = stack.pop();
+            entries.remove(e.item);
+            for (Entry c : e.childEntries) {
+                if (c != null) {
+                    stack.push(c);
+                }
+            }
+        }
+    }
+
+    /** constructs entries of the visible sub-tree without recursion. returns null if the item is closed */
+    protected Entry build(TerminalItem item, Entry parent, int indexInParent) {
+        if (!tree.isOpen(item)) {
+            return null;
+        }
+        Entry top = makeEntry(item, parent, indexInParent);
+        Deque<Entry> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            Entry e = stack.peek();
+            if (e.buildPosition < e.children.length) {
+                int i = e.buildPosition++;
+                TerminalItem c = e.children[i];
+                if (tree.isOpen(c)) {
+                    Entry ce = makeEntry(c, e, i);
+                    e.childEntries[i] = ce;
+                    stack.push(ce);
+                }
+            } else {
+                stack.pop();
+                e.initSums();
+            }
+        }
+        return top;
+    }
+
+    protected Entry makeEntry(TerminalItem item, Entry parent, int indexInParent) {
+        List<TerminalItem> cs = new ArrayList<>();
+        TerminalItem c = tree.getFirstChild(item);
+        while (c != null) {
+            cs.add(c);
+            c = tree.getNextSibling(c);
+        }
+        Entry e = new Entry(item, parent, indexInParent, cs.toArray(new TerminalItem[0]));
+        entries.put(item, e);
+        return e;
+    }
+
+    public static class Entry {
+        public TerminalItem item;
+        public Entry parent;
+        public int indexInParent;
+        public TerminalItem[] children;
+        /** non-null for opened children */
+        public Entry[] childEntries;
+        /** 1-origin Fenwick tree of children sizes */
+        public long[] sums;
+        /** 1 + sum of children sizes */
+        public long size = 1;
+
+        protected int buildPosition;
+        protected Map<TerminalItem, Integer> childIndex;
+
+        public Entry(TerminalItem item, Entry parent, int indexInParent, TerminalItem[] children) {
+            this.item = item;
+            this.parent = parent;
+            this.indexInParent = indexInParent;
+            this.children = children;
+            this.childEntries = new Entry[children.length];
+        }
+
+        public long getChildSize(int i) {
+            Entry c = childEntries[i];
+            return c == null ? 1 : c.size;
+        }
+
+        protected void initSums() {
+            int n = children.length;
+            sums = new long[n + 1];
+            long total = 0;
+            for (int i = 1; i <= n; ++i) {
+                long s = getChildSize(i - 1);
+                total += s;
+                sums[i] += s;
+                int up = i + (i & -i);
+                if (up <= n) {
+                    sums[up] += sums[i];
+                }
+            }
+            size = 1 + total;
+        }
+
+        /** sum of sizes of children[0] ... children[n-1] */
+        public long prefix(int n) {
+            long s = 0;
+            for (int i = n; i > 0; i -= (i & -i)) {
+                s += sums[i];
+            }
+            return s;
+        }
+
+        public void add(int childIndex, long delta) {
+            for (int i = childIndex + 1; i < sums.length; i += (i & -i)) {
+                sums[i] += delta;
+            }
+        }
+
+        /** the child index i s.t. prefix(i) &lt;= k &lt; prefix(i + 1) */
+        public int find(long k) {
+            int pos = 0;
+            for (int step = Integer.highestOneBit(sums.length); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next < sums.length && sums[next] <= k) {
+                    pos = next;
+                    k -= sums[next];
+                }
+            }
+            return pos;
+        }
+
+        public int indexOf(TerminalItem child) {
+            if (child instanceof TerminalItemLine) {
+                int i = ((TerminalItemLine) child).getSiblingIndex();
+                if (i >= 0 && i < children.length && children[i] == child) {
+                    return i;
+                }
+            }
+            if (childIndex == null) {
+                childIndex = new HashMap<>(children.length * 2);
+                for (int i = 0; i < children.length; ++i) {
+                    childIndex.put(children[i], i);
+                }
+            }
+            Integer i = childIndex.get(child);
+            return i == null ? -1 : i;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry(" + item + ", size=" + size + ")";
+        }
+    }
+}
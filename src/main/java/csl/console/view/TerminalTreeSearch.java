@@ -0,0 +1,141 @@
+package csl.console.view;
+
+/**
+ * A search of the pattern of a {@link TerminalTreeView} running on a worker thread.
+ * <pre>
+ *     TerminalTreeSearch search = new TerminalTreeSearch(treeView, treeView.getSearchStartItem(), true);
+ *     search.start();
+ *     ...
+ *     search.getProgressMessage(); //"Searching: 12345 items (1000000 items/s)"
+ *     search.cancel();             //stops at the next item
+ *     ...
+ *     search.await();
+ *     search.getResult();          //null if not found or canceled
+ * </pre>
+ *  The start item and the search engine of the view are captured by the constructor on the thread of the view.
+ *  The worker calls {@link TerminalTreeView#findSearchForwardNonDisplay(TerminalItem, TerminalSearchEngine, TerminalTreeSearch)}
+ *   or {@link TerminalTreeView#findSearchBackwardNonDisplay(TerminalItem, TerminalSearchEngine, TerminalTreeSearch)},
+ *   which do not use the state of the view but read the tree.
+ *  Reading a lazily loaded tree constructs its children, thus the worker must be the only reader of the tree
+ *   until {@link #isDone()}:
+ *   <ul>
+ *       <li>{@link ConsoleModeProgress} shows the lines of the view taken before the start, without reading the tree</li>
+ *       <li>{@link #start()} registers the search by {@link TerminalTreeView#setRunningSearch(TerminalTreeSearch)},
+ *             and {@link TerminalTreeView#buildMatchIndex(int)} does nothing while the search is running</li>
+ *   </ul>
+ *  The result is visible to the caller after {@link #await()}.
+ *  The result can be shown by {@link TerminalTreeView#openAncestorsAndMoveCursorTo(TerminalItem)}.
+ */
+public class TerminalTreeSearch implements ConsoleModeProgress.Task {
+    protected TerminalTreeView view;
+    protected TerminalItem start;
+    protected TerminalSearchEngine engine;
+    protected boolean forward;
+    protected Thread thread;
+
+    protected volatile boolean canceled;
+    protected volatile boolean done;
+    /** written only by the worker */
+    protected volatile long scanned;
+    protected long startNanos;
+    protected TerminalItem result;
+    protected RuntimeException error;
+
+    /** start is the item where the search begins, e.g. {@link TerminalTreeView#getSearchStartItem()}.
+     *  the current search engine of the view is captured */
+    public TerminalTreeSearch(TerminalTreeView view, TerminalItem start, boolean forward) {
+        this.view = view;
+        this.start = start;
+        this.engine = view.getSearchEngine();
+        this.forward = forward;
+    }
+
+    public TerminalTreeView getView() {
+        return view;
+    }
+
+    public TerminalItem getStart() {
+        return start;
+    }
+
+    public TerminalSearchEngine getEngine() {
+        return engine;
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    /** registers the search to the view and starts a daemon thread running {@link #run()} */
+    public void start() {
+        startNanos = System.nanoTime();
+        view.setRunningSearch(this);
+        thread = new Thread(this::run, "console-search");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            result = forward ?
+                    view.findSearchForwardNonDisplay(start, engine, this) :
+                    view.findSearchBackwardNonDisplay(start, engine, this);
+        } catch (RuntimeException ex) {
+            error = ex;
+        } finally {
+            done = true;
+        }
+    }
+
+    /** called by the search for each visited item. returns false if canceled */
+    public boolean step() {
+        scanned++; //single writer
+        return !canceled;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public long getScanned() {
+        return scanned;
+    }
+
+    public long getItemsPerSecond() {
+        long t = System.nanoTime() - startNanos;
+        return t <= 0 ? 0 : (long) (scanned * 1e9 / t);
+    }
+
+    /** null if not found or canceled. available after {@link #await()} */
+    public TerminalItem getResult() {
+        return result;
+    }
+
+    /** an exception thrown by the search. available after {@link #await()} */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    @Override
+    public String getProgressMessage() {
+        return String.format("Searching %s: %,d items (%,d items/s)  ESC: cancel",
+                forward ? "forward" : "backward", getScanned(), getItemsPerSecond());
+    }
+}
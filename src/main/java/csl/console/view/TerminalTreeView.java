@@ -1,14 +1,16 @@
 package csl.console.view;
 
-import org.jline.utils.AttributedCharSequence;
 import org.jline.utils.AttributedCharSequenceEx;
 import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringCached;
 import org.jline.utils.AttributedStyle;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -38,17 +40,32 @@ import java.util.regex.Pattern;
  *        if succeeded their operations and the list of items or its tokens is changed.
  *         Note: column changes ({@link #scrollToNextColumn()} and {@link #scrollToPreviousColumn()})
  *                will not change them.
+ *  <p>
+ *  Each {@link DisplayItem} caches its tokens, column widths and the last written line.
+ *    {@link #updateDisplayTokens()} re-tokenizes only dirty items
+ *      (newly added ones, or all after {@link #invalidateDisplayItems()}),
+ *      and replaces only the head column of items whose head is changed by a cursor move.
+ *    Column widths are re-computed from the cached widths without tokenization, and
+ *     {@link #write()} re-writes only lines whose tokens or the column layout are changed.
  *
  */
 public class TerminalTreeView {
     protected TerminalItem origin;
     protected TerminalTree tree;
 
-    protected List<DisplayItem> displayItems;
+    protected RingList<DisplayItem> displayItems;
+    protected RingList<DisplayItem> spareDisplayItems;
     protected List<DisplayColumn> displayColumns = new ArrayList<>(3);
     protected int displayScrollableWidth; //virtual column width
     protected int displayFixedWidth;
     protected volatile boolean needToUpdateDisplay = true;
+    /** incremented when the column layout is changed: cached lines of items are written with a layout */
+    protected int layoutVersion;
+    protected int[] layoutSignature = new int[0];
+    /** reused by {@link #write()} */
+    protected TerminalLineColumnsWriting writing;
+    /** records {@link ConsoleMetrics.Phase#BUILD}, {@link ConsoleMetrics.Phase#TOKENS} and {@link ConsoleMetrics.Phase#WRITE} */
+    protected ConsoleMetrics metrics = new ConsoleMetrics(false);
 
     protected volatile int width = 100;
     protected volatile int height = 30;
@@ -58,14 +75,37 @@ public class TerminalTreeView {
     protected int offsetY;
 
     protected int cursorLine;
+    /** the number of lines scrolled by a page command. non-positive means the half of the height */
+    protected int pageSize;
 
-    protected Pattern pattern;
+    /** the current search, or null */
+    protected TerminalSearchEngine searchEngine;
     protected AttributedStyle patternStyle = AttributedStyle.DEFAULT.inverse();
+    /** created for the searchEngine and the patternStyle, sharing cached highlighted tokens between display items */
+    protected TerminalMatchHighlighter highlighter = new TerminalMatchHighlighter(null, patternStyle);
+
+    protected TerminalTreeRowIndex rowIndex;
+
+    /** if true, {@link #search(TerminalSearchEngine)} creates {@link #matchIndex} built by {@link #buildMatchIndex(int)} */
+    protected boolean matchIndexEnabled;
+    protected TerminalTreeMatchIndex matchIndex;
+    /** the last search started by {@link TerminalTreeSearch#start()}: the match index is not built while it is running */
+    protected volatile TerminalTreeSearch runningSearch;
+
+    /** positioned at the first and the last of displayItems. lazily re-constructed if they are mismatched */
+    protected TerminalTreeCursor topCursor;
+    protected TerminalTreeCursor bottomCursor;
+
+    /** recently displayed items for reusing their tokens. null if disabled */
+    protected DisplayItemCache displayItemCache = new DisplayItemCache(DEFAULT_DISPLAY_ITEM_CACHE_SIZE);
+
+    public static final int DEFAULT_DISPLAY_ITEM_CACHE_SIZE = 512;
 
     public TerminalTreeView(TerminalItem origin, TerminalTree tree) {
         this.origin = origin;
         this.tree = tree;
-        displayItems = new ArrayList<>(height);
+        displayItems = new RingList<>(height);
+        spareDisplayItems = new RingList<>(height);
     }
 
     public List<DisplayItem> getDisplayItems() {
@@ -83,6 +123,25 @@ public class TerminalTreeView {
     }
     public void setTree(TerminalTree tree) {
         this.tree = tree;
+        invalidateDisplayItems();
+    }
+    public ConsoleMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(ConsoleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public TerminalTreeRowIndex getRowIndex() {
+        return rowIndex;
+    }
+    /** the index can be null, which disables O(log n) row jumps */
+    public void setRowIndex(TerminalTreeRowIndex rowIndex) {
+        this.rowIndex = rowIndex;
+        if (rowIndex != null) {
+            rowIndex.setRootFrom(origin);
+        }
     }
     public int getWidth() {
         return width;
@@ -136,14 +195,22 @@ public class TerminalTreeView {
     }
 
     public void build() {
+        long t = metrics.start();
         displayItems.clear();
         needToUpdateDisplay = true;
+        if (rowIndex != null) {
+            rowIndex.setRootFrom(origin);
+        }
+        if (matchIndex != null && !matchIndex.getRoot().equals(getMatchIndexRoot())) {
+            startMatchIndex();
+        }
 
         buildLine(new BuildIndex(0, 0), origin);
         addNextLinesToHeight();
         updateOrigin();
         updateCursorLine();
         needToReBuild = false;
+        metrics.record(ConsoleMetrics.Phase.BUILD, t);
     }
 
     /**
@@ -155,7 +222,7 @@ public class TerminalTreeView {
      *           +1 : existingItem1
      *           +2 : existingItem2
      *
-     *       =&gt;  //call {@link #buildLineChildren(BuildIndex, TerminalItem)}
+     *       =&gt;  //move a {@link TerminalTreeCursor} to next while it is in the sub-tree of item
      *        idx.dI: item
      *           +1 :    getFirstChild(item)
      *           +2 : existingItem1
@@ -163,7 +230,7 @@ public class TerminalTreeView {
      *       =&gt;
      *        idx.dI: item
      *           +1 :    getFirstChild(item)
-     *           +2 :       getFirstChild(getFirstChild(item)) //recursive call
+     *           +2 :       getFirstChild(getFirstChild(item))
      *           +3 : existingItem1
      *           +4 : existingItem2
      *       =&gt;
@@ -178,29 +245,21 @@ public class TerminalTreeView {
     public boolean buildLine(BuildIndex idx, TerminalItem item) {
         if (item == null) {
             return false;
-        } else if (idx.y < getDisplayMaxLine()) {
+        }
+        TerminalTreeCursor cursor = makeCursor(item);
+        int depth = cursor.getDepth();
+        do {
+            if (idx.y >= getDisplayMaxLine()) {
+                return false;
+            }
             if (idx.y >= getDisplayMinLine()) {
-                displayItems.add(idx.displayIndex, makeDisplayItem(item));
+                displayItems.add(idx.displayIndex, makeDisplayItem(cursor.getItem()));
                 needToUpdateDisplay = true;
                 ++idx.displayIndex;
             }
             ++idx.y;
-            return buildLineChildren(idx, item);
-        } else {
-            return false;
-        }
-    }
-    protected boolean buildLineChildren(BuildIndex idx, TerminalItem item) {
-        TerminalItem child = tree.isOpen(item) ? tree.getFirstChild(item) : null;
-        boolean result = true;
-        while (child != null) {
-            if (!buildLine(idx, child)) {
-                result = false;
-                break;
-            }
-            child = tree.getNextSibling(child);
-        }
-        return result;
+        } while (cursor.next() && cursor.getDepth() > depth);
+        return true;
     }
 
     /**
@@ -230,10 +289,12 @@ public class TerminalTreeView {
     }
 
     protected boolean addNextLine() {
-        DisplayItem last = displayItems.get(displayItems.size() - 1);
-        TerminalItem next = tree.getNext(last.getItem());
-        if (next != null) {
-            displayItems.add(makeDisplayItem(next));
+        if (displayItems.isEmpty()) {
+            return false;
+        }
+        TerminalTreeCursor cursor = getBottomCursor();
+        if (cursor.next()) {
+            displayItems.addLast(makeDisplayItem(cursor.getItem()));
             needToUpdateDisplay = true;
             return true;
         } else {
@@ -241,6 +302,34 @@ public class TerminalTreeView {
         }
     }
 
+    protected TerminalTreeCursor makeCursor(TerminalItem item) {
+        return new TerminalTreeCursor(tree, item);
+    }
+
+    /** a cursor walking the entire tree regardless of the open state */
+    protected TerminalTreeCursor makeLogicalCursor(TerminalItem item) {
+        return new TerminalTreeCursor.LogicalCursor(tree, item);
+    }
+
+    /** a cursor positioned at the first display item. displayItems must not be empty.
+     *  the cursor is kept while its item equals the item, as items like {@link TerminalItemHandle}s are created on demand */
+    protected TerminalTreeCursor getTopCursor() {
+        TerminalItem item = displayItems.getFirst().getItem();
+        if (topCursor == null || !item.equals(topCursor.getItem())) {
+            topCursor = makeCursor(item);
+        }
+        return topCursor;
+    }
+
+    /** a cursor positioned at the last display item. displayItems must not be empty */
+    protected TerminalTreeCursor getBottomCursor() {
+        TerminalItem item = displayItems.getLast().getItem();
+        if (bottomCursor == null || !item.equals(bottomCursor.getItem())) {
+            bottomCursor = makeCursor(item);
+        }
+        return bottomCursor;
+    }
+
 
     protected void updateOrigin() {
         if (!displayItems.isEmpty()) {
@@ -259,16 +348,81 @@ public class TerminalTreeView {
         }
     }
 
+    /** marks all display items as dirty: their tokens will be re-obtained from the tree */
+    public void invalidateDisplayItems() {
+        displayItems.forEach(DisplayItem::markDirty);
+        if (displayItemCache != null) {
+            displayItemCache.clear();
+        }
+        needToUpdateDisplay = true;
+    }
+
+    /** 0 disables the cache of display items */
+    public void setDisplayItemCacheSize(int size) {
+        if (size <= 0) {
+            displayItemCache = null;
+        } else if (displayItemCache == null) {
+            displayItemCache = new DisplayItemCache(size);
+        } else {
+            displayItemCache.setCapacity(size);
+        }
+    }
+
+    public int getDisplayItemCacheSize() {
+        return displayItemCache == null ? 0 : displayItemCache.getCapacity();
+    }
+
     protected void updateDisplayTokens() {
-        displayColumns.clear();
+        long t = metrics.start();
         int i = 0;
         for (DisplayItem item : displayItems) {
-            item.updateTokens(tree, getLineHead(item.getItem(), i == cursorLine), displayColumns,
-                    pattern, patternStyle);
+            item.updateTokens(tree, getLineHead(item.getItem(), i == cursorLine), highlighter);
             ++i;
         }
-        updateScrollableColumns();
+        updateDisplayColumns();
         needToUpdateDisplay = false;
+        metrics.record(ConsoleMetrics.Phase.TOKENS, t);
+    }
+
+    /** re-computes columns from cached widths of display items */
+    protected void updateDisplayColumns() {
+        displayColumns.forEach(DisplayColumn::reset);
+        int columns = 0;
+        for (DisplayItem item : displayItems) {
+            columns = Math.max(columns, item.updateColumn(displayColumns));
+        }
+        while (displayColumns.size() > columns) {
+            displayColumns.remove(displayColumns.size() - 1);
+        }
+        updateScrollableColumns();
+    }
+
+    /** increments {@link #layoutVersion} if the layout of lines is changed from the last call */
+    protected void updateLayoutVersion() {
+        int n = displayColumns.size();
+        int[] sig = layoutSignature.length == n * 2 + 3 ? layoutSignature : new int[n * 2 + 3];
+        boolean changed = (sig != layoutSignature);
+        int i = 0;
+        changed |= setSignature(sig, i++, width);
+        changed |= setSignature(sig, i++, offsetX);
+        changed |= setSignature(sig, i++, displayScrollableWidth);
+        for (DisplayColumn c : displayColumns) {
+            changed |= setSignature(sig, i++, c.getWidth());
+            changed |= setSignature(sig, i++, (c.isScrollable() ? 1 : 0) | (c.isIndent() ? 2 : 0));
+        }
+        layoutSignature = sig;
+        if (changed) {
+            ++layoutVersion;
+        }
+    }
+
+    private boolean setSignature(int[] sig, int i, int v) {
+        if (sig[i] != v) {
+            sig[i] = v;
+            return true;
+        } else {
+            return false;
+        }
     }
     protected void updateScrollableColumns() {
         int s = 0;
@@ -299,8 +453,8 @@ public class TerminalTreeView {
     }
 
 
-    private static List<AttributedString> headCursor = Collections.singletonList(new AttributedString("*"));
-    private static List<AttributedString> headSpace = Collections.singletonList(new AttributedString(" "));
+    private static List<AttributedString> headCursor = Collections.singletonList(AttributedStringCached.of(new AttributedString("*")));
+    private static List<AttributedString> headSpace = Collections.singletonList(AttributedStringCached.of(new AttributedString(" ")));
 
     protected List<AttributedString> getLineHead(TerminalItem item, boolean cursorLine) {
         return cursorLine ? headCursor : headSpace;
@@ -310,10 +464,56 @@ public class TerminalTreeView {
 
     /////////////////////////////////
 
+    /** returns a cached display item of the item if exists, otherwise constructs a new one */
     protected DisplayItem makeDisplayItem(TerminalItem item) {
+        if (displayItemCache == null) {
+            return newDisplayItem(item);
+        }
+        DisplayItem d = displayItemCache.get(item);
+        if (d == null) {
+            d = newDisplayItem(item);
+            displayItemCache.put(item, d);
+        }
+        return d;
+    }
+
+    protected DisplayItem newDisplayItem(TerminalItem item) {
         return new DisplayItem(item);
     }
 
+    /**
+     * an LRU map from items to display items, keyed by {@link TerminalItem#equals(Object)}:
+     *  items of {@link TerminalItemNode} are compared by identity,
+     *  and handles like {@link TerminalItemHandle} created on demand can also hit.
+     */
+    public static class DisplayItemCache extends LinkedHashMap<TerminalItem, DisplayItem> {
+        private static final long serialVersionUID = 1L;
+        protected int capacity;
+
+        public DisplayItemCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+            Iterator<TerminalItem> iter = keySet().iterator();
+            while (size() > capacity && iter.hasNext()) {
+                iter.next();
+                iter.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TerminalItem, DisplayItem> eldest) {
+            return size() > capacity;
+        }
+    }
+
     public static class BuildIndex {
         public int y;
         public int displayIndex;
@@ -328,6 +528,13 @@ public class TerminalTreeView {
         public boolean scrollable = true;
         public Boolean indent = null;
         public int width;
+
+        public void reset() {
+            scrollable = true;
+            indent = null;
+            width = 0;
+        }
+
         public void updateWidth(int w) {
             if (w > width) {
                 width = w;
@@ -363,11 +570,21 @@ public class TerminalTreeView {
         protected List<List<AttributedString>> columnTokens;
         protected int startContent;
 
-        protected Pattern pattern;
-        protected AttributedStyle patternStyle = AttributedStyle.DEFAULT;
+        protected TerminalMatchHighlighter highlighter;
         /** {columnTokensIndex, tokensIndex, attrStrStart, attrStrEndEx} */
         protected List<int[]> lastMatchedRanges = Collections.emptyList();
 
+        /** true if tokens need to be re-obtained from the tree */
+        protected boolean dirty = true;
+        protected List<AttributedString> head;
+        /** widths of columnTokens */
+        protected int[] columnWidths;
+        protected boolean[] tokenIndents;
+
+        /** the last written line and the layout version of it */
+        protected AttributedString line;
+        protected int lineLayoutVersion;
+
         public DisplayItem(TerminalItem item) {
             this.item = item;
         }
@@ -376,21 +593,52 @@ public class TerminalTreeView {
             return item;
         }
 
+        public void markDirty() {
+            dirty = true;
+            itemTokens = null;
+            line = null;
+        }
+
+        public boolean isDirty() {
+            return dirty;
+        }
+
         public void updateTokens(TerminalTree tree, List<AttributedString> head, List<DisplayColumn> editingColumns,
-                                 Pattern pattern, AttributedStyle patternStyle) {
-            buildColumnTokens(tree, head);
-            updateColumn(tree, editingColumns);
-            updatePattern(pattern, patternStyle);
+                                 TerminalMatchHighlighter highlighter) {
+            updateTokens(tree, head, highlighter);
+            updateColumn(editingColumns);
+        }
+
+        /** re-builds tokens only if the item is dirty or the head or the highlighter is changed.
+         *  returns true if changed */
+        public boolean updateTokens(TerminalTree tree, List<AttributedString> head,
+                                    TerminalMatchHighlighter highlighter) {
+            if (dirty || columnTokens == null || highlighter != this.highlighter ||
+                    (head != this.head && (head == null || this.head == null || head.size() != this.head.size()))) {
+                buildColumnTokens(tree, head);
+                updateColumnWidths(tree);
+                updatePattern(highlighter);
+                dirty = false;
+            } else if (head != this.head) {
+                this.head = head;
+                columnTokens.set(0, head);
+                columnWidths[0] = getWidth(head);
+            } else {
+                return false;
+            }
+            line = null;
+            return true;
         }
 
         private void buildColumnTokens(TerminalTree tree, List<AttributedString> head) {
             if (itemTokens == null){
-                itemTokens = tree.getColumnTokens(item);
+                itemTokens = toCachedTokens(tree.getColumnTokens(item));
             }
             List<List<AttributedString>> cs = itemTokens;
-            ConsoleLogger.log("cols: " + cs + " head: " + head);
+            ConsoleLogger.log(ConsoleLogger.Level.DEBUG, "cols: {} head: {}", cs, head);
             columnTokens = new ArrayList<>(cs.size() + 1);
 
+            this.head = head;
             startContent = 0;
             if (head != null) {
                 columnTokens.add(head);
@@ -399,65 +647,96 @@ public class TerminalTreeView {
             columnTokens.addAll(cs);
         }
 
-        private void updateColumn(TerminalTree tree, List<DisplayColumn> editingColumns) {
-            boolean[] tokenIndents = tree.getColumnTokenIndents(item, itemTokens);
-            for (int i = 0, l = columnTokens.size(); i < l; ++i) {
-                List<AttributedString> c = columnTokens.get(i);
+        /** converts tokens by {@link AttributedStringCached#of(List)} once after obtained from the tree */
+        private static List<List<AttributedString>> toCachedTokens(List<List<AttributedString>> cs) {
+            List<List<AttributedString>> tokens = new ArrayList<>(cs.size());
+            for (List<AttributedString> c : cs) {
+                tokens.add(AttributedStringCached.of(c));
+            }
+            return tokens;
+        }
+
+        private void updateColumnWidths(TerminalTree tree) {
+            tokenIndents = tree.getColumnTokenIndents(item, itemTokens);
+            columnWidths = new int[columnTokens.size()];
+            for (int i = 0, l = columnWidths.length; i < l; ++i) {
+                columnWidths[i] = getWidth(columnTokens.get(i));
+            }
+        }
 
+        private static int getWidth(List<AttributedString> tokens) {
+            int width = 0;
+            for (AttributedString t : tokens) {
+                width += t.columnLength();
+            }
+            return width;
+        }
+
+        /** merges cached widths into editingColumns. returns the number of columns */
+        public int updateColumn(List<DisplayColumn> editingColumns) {
+            for (int i = 0, l = columnWidths.length; i < l; ++i) {
                 while (i >= editingColumns.size()) {
                     editingColumns.add(new DisplayColumn());
                 }
                 DisplayColumn dc = editingColumns.get(i);
-
-                int width = c.stream()
-                        .mapToInt(AttributedCharSequence::columnLength)
-                        .sum();
-                dc.updateWidth(width);
+                dc.updateWidth(columnWidths[i]);
 
                 if (i >= startContent) {
                     dc.updateIndent(tokenIndents[i - startContent]);
                 }
             }
+            return columnWidths.length;
+        }
+
+        /** the cached line if it was written with the layoutVersion, or null */
+        public AttributedString getLine(int layoutVersion) {
+            return (line != null && lineLayoutVersion == layoutVersion) ? line : null;
         }
 
-        public void updatePattern(Pattern pattern, AttributedStyle style) {
-            this.pattern = pattern;
-            this.patternStyle = style;
+        public void setLine(AttributedString line, int layoutVersion) {
+            this.line = line;
+            this.lineLayoutVersion = layoutVersion;
+        }
+
+        /** re-builds highlighted tokens. a null or disabled highlighter restores tokens of the item without copying */
+        public void updatePattern(TerminalMatchHighlighter highlighter) {
+            this.highlighter = highlighter;
             updatePatternTokens();
         }
+
         private void updatePatternTokens() {
             lastMatchedRanges = Collections.emptyList();
+            boolean enabled = highlighter != null && highlighter.isEnabled();
             for (int i = startContent, l = columnTokens.size(); i < l; ++i) {
-                int tokenIndex = i - startContent;
-
-                List<AttributedString> srcTokens = itemTokens.get(tokenIndex);
-                List<AttributedString> tokens = new ArrayList<>(srcTokens.size());
-                for (int t = 0, ts = srcTokens.size() ; t < ts; ++t) {
-                    tokens.add(match(i, t, srcTokens.get(t), pattern, patternStyle));
-                }
-
-                columnTokens.set(i, tokens);
+                List<AttributedString> srcTokens = itemTokens.get(i - startContent);
+                columnTokens.set(i, enabled ? match(i, srcTokens) : srcTokens);
             }
             if (!lastMatchedRanges.isEmpty()) {
                 ((ArrayList<int[]>) lastMatchedRanges).trimToSize();
             }
         }
 
-        private AttributedString match(int colIdx, int tokenIdx, AttributedString col, Pattern pattern, AttributedStyle style) {
-            if (pattern == null) {
-                return col;
-            }
-            Matcher m = pattern.matcher(col);
-
-            while (m.find()) {
-                int[] range = new int[] {colIdx, tokenIdx, m.start(), m.end()};
+        /** highlights tokens of the column. returns the srcTokens itself if nothing is matched */
+        private List<AttributedString> match(int colIdx, List<AttributedString> srcTokens) {
+            List<AttributedString> tokens = srcTokens;
+            for (int t = 0, ts = srcTokens.size(); t < ts; ++t) {
+                TerminalMatchHighlighter.Highlighted h = highlighter.highlight(srcTokens.get(t));
+                if (!h.isMatched()) {
+                    continue;
+                }
+                if (tokens == srcTokens) {
+                    tokens = new ArrayList<>(srcTokens);
+                }
+                tokens.set(t, h.getToken());
                 if (lastMatchedRanges.isEmpty()) {
                     lastMatchedRanges = new ArrayList<>();
                 }
-                lastMatchedRanges.add(range);
+                int[] ranges = h.getRanges();
+                for (int r = 0; r + 1 < ranges.length; r += 2) {
+                    lastMatchedRanges.add(new int[] {colIdx, t, ranges[r], ranges[r + 1]});
+                }
             }
-            //this will cause same matching again
-            return col.styleMatches(pattern, style);
+            return tokens;
         }
 
         public List<List<AttributedString>> getColumnTokens() {
@@ -504,13 +783,17 @@ public class TerminalTreeView {
      */
     public boolean scrollToNextLine() {
         boolean result = false;
-        List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
-        if (displayItems.size() >= height) {
-            DisplayItem removed = displayItems.remove(0);
-            if (!addNextLine()) {
-                displayItems.add(0, removed); //cancel
+        getDisplayItemsWithBuild(false);
+        if (!displayItems.isEmpty() && displayItems.size() >= height) {
+            TerminalTreeCursor bottom = getBottomCursor();
+            if (!bottom.next()) {
                 return false;
             }
+            DisplayItem removed = displayItems.removeFirst();
+            if (topCursor != null && topCursor.getItem() == removed.getItem()) {
+                topCursor.next();
+            }
+            displayItems.addLast(makeDisplayItem(bottom.getItem()));
             result = true;
         }
         updateOrigin();
@@ -535,21 +818,19 @@ public class TerminalTreeView {
      * </pre>
      */
     public boolean scrollToPreviousLine() {
-        DisplayItem removed = null;
         boolean result = false;
-        List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
-        if (displayItems.size() >= height) {
-            removed = displayItems.remove(displayItems.size() - 1);
-        }
-
+        getDisplayItemsWithBuild(false);
         if (!displayItems.isEmpty()) {
-            DisplayItem top = displayItems.get(0);
-            TerminalItem prev = tree.getPrevious(top.getItem());
-            if (prev != null) {
-                displayItems.add(0, makeDisplayItem(prev));
+            TerminalTreeCursor top = getTopCursor();
+            if (top.previous()) {
+                if (displayItems.size() >= height) {
+                    DisplayItem removed = displayItems.removeLast();
+                    if (bottomCursor != null && bottomCursor.getItem() == removed.getItem()) {
+                        bottomCursor.previous();
+                    }
+                }
+                displayItems.addFirst(makeDisplayItem(top.getItem()));
                 result = true;
-            } else if (removed != null) { //cancel
-                displayItems.add(removed);
             }
         }
         updateOrigin();
@@ -575,12 +856,28 @@ public class TerminalTreeView {
     /////////////////////////////////
 
     /** a combination of {@link #makeWriting()} and
-     *  {@link #writeLine(TerminalLineColumnsWriting, DisplayItem)}*/
+     *  {@link #writeLine(TerminalLineColumnsWriting, DisplayItem)}.
+     *  The returned writing is reused and reset by the next call */
     public TerminalLineColumnsWriting write() {
-        TerminalLineColumnsWriting writing = makeWriting();
+        if (writing == null) {
+            writing = makeWriting();
+        } else {
+            writing.reset(width);
+        }
         List<DisplayItem> displayItems = getDisplayItemsWithBuild(true);
-        displayItems.forEach(item ->
-                writeLine(writing, item));
+        long t = metrics.start(); //excluding BUILD and TOKENS
+        updateLayoutVersion();
+        for (DisplayItem item : displayItems) {
+            AttributedString line = item.getLine(layoutVersion);
+            if (line != null) {
+                writing.appendLine(line);
+            } else {
+                writeLine(writing, item);
+                List<AttributedString> lines = writing.getLines();
+                item.setLine(lines.get(lines.size() - 1), layoutVersion);
+            }
+        }
+        metrics.record(ConsoleMetrics.Phase.WRITE, t);
         return writing;
     }
 
@@ -661,26 +958,30 @@ public class TerminalTreeView {
         }
     }
     protected TerminalItem openDisplayItem(int idx, boolean open) {
-        List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
+        getDisplayItemsWithBuild(false);
         DisplayItem displayItem = displayItems.get(idx);
-        TerminalItem item = (open ? tree.open(displayItem.getItem()) : tree.close(displayItem.getItem()));
+        TerminalItem item = openItem(displayItem.getItem(), open);
 
-        List<DisplayItem> old = displayItems;
-        displayItems = new ArrayList<>(height);
-        this.displayItems = displayItems;
+        //swaps the two buffers: the old one is kept until the rest items are reused
+        RingList<DisplayItem> old = displayItems;
+        displayItems = spareDisplayItems;
+        spareDisplayItems = old;
+        displayItems.clear();
         needToUpdateDisplay = true;
-        displayItems.addAll(old.subList(0, idx));
+        for (int i = 0; i < idx; ++i) {
+            displayItems.addLast(old.get(i));
+        }
 
         BuildIndex buildIndex = new BuildIndex(getDisplayMinLine() + idx, idx);
         buildLine(buildIndex, item);
 
         reuseRestItems(item, old);
+        old.clear();
 
         addNextLinesToHeight();
         return item;
     }
     protected void reuseRestItems(TerminalItem item, List<DisplayItem> old) {
-        List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
         if (item == null) {
             return;
         }
@@ -696,7 +997,7 @@ public class TerminalTreeView {
             DisplayItem rest = old.get(i);
             if (afterNext || rest.getItem().equals(next)) {
                 afterNext = true;
-                displayItems.add(rest);
+                displayItems.addLast(rest);
                 needToUpdateDisplay = true;
             }
         }
@@ -708,12 +1009,22 @@ public class TerminalTreeView {
         if (idx >= 0) {
             return openDisplayItem(idx, open);
         } else {
-            if (open) {
-                return tree.open(item);
-            } else {
-                return tree.close(item);
-            }
+            return openItem(item, open);
+        }
+    }
+
+    /** opens or closes the item in the tree, and notifies it to the row index.
+     *  opening is also notified to the match index, as lazily loaded trees might construct or reload children of the item */
+    protected TerminalItem openItem(TerminalItem item, boolean open) {
+        boolean opening = open && matchIndex != null && !tree.isOpen(item);
+        TerminalItem result = (open ? tree.open(item) : tree.close(item));
+        if (rowIndex != null) {
+            rowIndex.update(result);
+        }
+        if (opening) {
+            updateMatchIndex(result);
         }
+        return result;
     }
     public int getDisplayedItemIndex(TerminalItem item) {
         List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
@@ -751,7 +1062,7 @@ public class TerminalTreeView {
         if (item == null) {
             return;
         }
-        List<DisplayItem> displayItems = getDisplayItemsWithBuild(false);
+        getDisplayItemsWithBuild(false);
 
         //an item in displayed items
         int line = getDisplayedItemIndex(item);
@@ -763,17 +1074,15 @@ public class TerminalTreeView {
 
         //reconstruct
         //e.g. height=10, cursorLine=6 => [0,1,2,3,4,5,6],7,8,9
-        TerminalItem last = item;
+        TerminalTreeCursor cursor = makeCursor(item);
         displayItems.clear();
         needToUpdateDisplay = true;
-        for (int i = 0, n = cursorLine; i <= n; ++i) {
-            if (last != null) {
-                displayItems.add(0, makeDisplayItem(last));
-                last = tree.getPrevious(last);
-            } else {
-                break;
-            }
+        displayItems.addFirst(makeDisplayItem(item));
+        bottomCursor = cursor.copy();
+        for (int i = 0, n = cursorLine; i < n && cursor.previous(); ++i) {
+            displayItems.addFirst(makeDisplayItem(cursor.getItem()));
         }
+        topCursor = cursor;
 
         addNextLinesToHeight();
         updateOrigin();
@@ -790,19 +1099,260 @@ public class TerminalTreeView {
     }
 
     public void scrollDownPage() {
-        for (int i = 0, l = getHeight() / 2; i < l; ++i) {
-            if (!scrollToNextLine()) {
-                break;
+        scrollBy(getPageSize());
+    }
+
+    public void scrollUpPage() {
+        scrollBy(-getPageSize());
+    }
+
+    public int getPageSize() {
+        return pageSize > 0 ? pageSize : Math.max(1, getHeight() / 2);
+    }
+
+    /** non-positive size means the half of the height (the default) */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * scrolls the viewport by n lines at once: positive n for {@link #scrollToNextLine()}
+     *   and negative n for {@link #scrollToPreviousLine()}, without moving the cursor line.
+     *  Overlapping display items are kept and only new rows are fetched.
+     *  With a row index, a jump over the height directly locates the new top row.
+     *  returns the number of actually scrolled lines (always non-negative)
+     */
+    public int scrollBy(int n) {
+        getDisplayItemsWithBuild(false);
+        if (n == 0 || displayItems.isEmpty()) {
+            return 0;
+        }
+        int scrolled;
+        if (rowIndex != null && Math.abs(n) > height) {
+            scrolled = scrollByRowIndex(n);
+        } else if (n > 0) {
+            scrolled = scrollForward(n);
+        } else {
+            scrolled = scrollBackward(-n);
+        }
+        updateOrigin();
+        if (scrolled > 0) {
+            needToUpdateDisplay = true;
+        }
+        return scrolled;
+    }
+
+    /**
+     * <pre>
+     *      0: item0
+     *         ...
+     *      h: itemH
+     *     =&gt; //the bottom cursor visits up to n next items, and the last h items of them are kept
+     *      0: item(k)  //k: the number of visited items
+     *         ...
+     *    h-k: itemH
+     *         ...
+     *      h: next(k)
+     * </pre>
+     */
+    protected int scrollForward(int n) {
+        if (displayItems.size() < height) {
+            return 0;
+        }
+        TerminalTreeCursor bottom = getBottomCursor();
+        RingList<TerminalItem> visited = new RingList<>(Math.min(n, height));
+        int k = 0;
+        while (k < n && bottom.next()) {
+            if (visited.size() >= height) {
+                visited.removeFirst();
             }
+            visited.addLast(bottom.getItem());
+            ++k;
+        }
+        if (k == 0) {
+            return 0;
+        }
+        for (int i = 0; i < k && !displayItems.isEmpty(); ++i) {
+            displayItems.removeFirst();
         }
+        for (TerminalItem item : visited) {
+            displayItems.addLast(makeDisplayItem(item));
+        }
+        topCursor = null;
+        return k;
     }
 
-    public void scrollUpPage() {
-        for (int i = 0, l = getHeight() / 2; i < l; ++i) {
-            if (!scrollToPreviousLine()) {
-                break;
+    /**
+     * <pre>
+     *      0: item0
+     *         ...
+     *      h: itemH
+     *     =&gt; //the top cursor visits up to n previous items, and the last h items of them are kept
+     *      0: prev(k)  //k: the number of visited items
+     *         ...
+     *    k-1: prev(1)
+     *      k: item0
+     *         ...
+     *      h: item(h-k)
+     * </pre>
+     */
+    protected int scrollBackward(int n) {
+        TerminalTreeCursor top = getTopCursor();
+        RingList<TerminalItem> visited = new RingList<>(Math.min(n, height));
+        int k = 0;
+        while (k < n && top.previous()) {
+            if (visited.size() >= height) {
+                visited.removeFirst();
+            }
+            visited.addLast(top.getItem());
+            ++k;
+        }
+        if (k == 0) {
+            return 0;
+        }
+        for (TerminalItem item : visited) {
+            displayItems.addFirst(makeDisplayItem(item));
+        }
+        if (displayItems.size() > height) {
+            displayItems.truncate(height);
+        }
+        bottomCursor = null;
+        return k;
+    }
+
+    /** re-constructs the viewport from the row of the origin + n, limited by the start and the end of the tree */
+    protected int scrollByRowIndex(int n) {
+        long originRow = rowIndex.getRow(origin);
+        if (originRow < 0) {
+            return n > 0 ? scrollForward(n) : scrollBackward(-n);
+        }
+        long target = originRow + n;
+        if (n > 0) {
+            if (displayItems.size() < height) {
+                return 0;
             }
+            target = Math.min(target, rowIndex.getRowCount() - height);
+        } else {
+            target = Math.max(target, 0);
+        }
+        TerminalItem item = rowIndex.getItemAt(target);
+        if (item == null || target == originRow) {
+            return 0;
+        }
+        TerminalTreeCursor cursor = makeCursor(item);
+        displayItems.clear();
+        displayItems.addLast(makeDisplayItem(item));
+        topCursor = cursor.copy();
+        while (displayItems.size() < height && cursor.next()) {
+            displayItems.addLast(makeDisplayItem(cursor.getItem()));
+        }
+        bottomCursor = cursor;
+        return (int) Math.abs(target - originRow);
+    }
+
+    /////////////////////////////////
+
+    /** the visible row of the origin from the top of the tree, or -1 if no row index */
+    public long getOriginRow() {
+        if (rowIndex == null) {
+            return -1;
         }
+        getDisplayItemsWithBuild(false);
+        return rowIndex.getRow(origin);
+    }
+
+    /** the number of visible rows of the entire tree, or -1 if no row index */
+    public long getRowCount() {
+        return rowIndex == null ? -1 : rowIndex.getRowCount();
+    }
+
+    /** the visible row of the cursor from the top of the tree, or -1 if no row index */
+    public long getCursorRow() {
+        long originRow = getOriginRow();
+        return originRow < 0 ? -1 : originRow + getCursorLine();
+    }
+
+    /** 0 to 100 ratio of the scroll position, or -1 if no row index */
+    public int getScrollPercent() {
+        long originRow = getOriginRow();
+        if (originRow < 0) {
+            return -1;
+        }
+        long scrollable = getRowCount() - displayItems.size();
+        if (scrollable <= 0) {
+            return 100;
+        } else {
+            return (int) Math.min(100, originRow * 100 / scrollable);
+        }
+    }
+
+    /**
+     * moves the cursor to the item at the visible row.
+     *  With a row index, it takes O(log n), otherwise it walks items from the top of the tree
+     */
+    public boolean moveToRow(long row) {
+        TerminalItem item = getItemAtRow(row);
+        if (item != null) {
+            moveCursorTo(item);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public void moveToTop() {
+        moveToRow(0);
+    }
+
+    public void moveToEnd() {
+        if (rowIndex != null) {
+            moveToRow(getRowCount() - 1);
+        } else {
+            TerminalItem item = getItemOnCursor();
+            if (item != null) {
+                TerminalTreeCursor cursor = makeCursor(item);
+                while (cursor.next()) {
+                    //walk to the end
+                }
+                moveCursorTo(cursor.getItem());
+            }
+        }
+    }
+
+    public TerminalItem getItemAtRow(long row) {
+        if (row < 0) {
+            return null;
+        }
+        getDisplayItemsWithBuild(false);
+        if (rowIndex != null) {
+            return rowIndex.getItemAt(row);
+        } else {
+            TerminalItem item = getTopItem();
+            if (item == null) {
+                return null;
+            }
+            TerminalTreeCursor cursor = makeCursor(item);
+            for (long i = 0; i < row; ++i) {
+                if (!cursor.next()) {
+                    return null;
+                }
+            }
+            return cursor.getItem();
+        }
+    }
+
+    /** the top ancestor of the origin */
+    public TerminalItem getTopItem() {
+        if (rowIndex != null) {
+            return rowIndex.getRoot();
+        }
+        TerminalItem item = origin;
+        TerminalItem parent = (item == null ? null : tree.getParent(item));
+        while (parent != null) {
+            item = parent;
+            parent = tree.getParent(item);
+        }
+        return item;
     }
 
     public void moveToParent() {
@@ -853,8 +1403,11 @@ public class TerminalTreeView {
     }
 
     public void debugLog() {
+        if (!ConsoleLogger.isEnabled(ConsoleLogger.Level.DEBUG)) {
+            return;
+        }
         int i = 0;
-        ConsoleLogger.log("w=" + width + ",h=" + height +
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, "w=" + width + ",h=" + height +
                 ", off=(" + offsetX + "," + offsetY + ") " +
                 ", cursorLine=" + cursorLine);
 
@@ -864,11 +1417,11 @@ public class TerminalTreeView {
             buf.append(" [").append(i).append("] ").append(c);
             ++i;
         }
-        ConsoleLogger.log(buf.toString());
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, buf.toString());
 
         i = 0;
         for (DisplayItem item : displayItems) {
-            ConsoleLogger.log(i + " : " + item.toString() +
+            ConsoleLogger.log(ConsoleLogger.Level.DEBUG, i + " : " + item.toString() +
                     (i == cursorLine ? " : cursorLine" : "") +
                     "  " + item.getColumnTokens());
             ++i;
@@ -877,23 +1430,113 @@ public class TerminalTreeView {
 
     ///////////////////////////////
 
-    public void search(String patternStr) {
-        Pattern pattern = null;
-        if (patternStr != null && !patternStr.isEmpty()) {
-            pattern = Pattern.compile(patternStr);
-        }
-        search(pattern);
+    /** searches the query parsed by {@link TerminalSearchEngine#parse(String)}:
+     *   a literal by default, "ic:" for ignoring cases and "re:" for a regex */
+    public void search(String query) {
+        search(TerminalSearchEngine.parse(query));
     }
 
     public void search(Pattern pattern) {
-        setPattern(pattern);
+        search(TerminalSearchEngine.regex(pattern));
+    }
+
+    public void search(TerminalSearchEngine searchEngine) {
+        setSearchEngine(searchEngine);
         for (DisplayItem item : getDisplayItemsWithBuild(true)) {
-            item.updatePattern(pattern, patternStyle);
+            item.updatePattern(highlighter);
+        }
+        startMatchIndex();
+    }
+
+    /** cancels the previous index, and creates a new {@link TerminalTreeMatchIndex} of the search if enabled.
+     *  the index is built by {@link #buildMatchIndex(int)} */
+    protected void startMatchIndex() {
+        if (matchIndex != null) {
+            matchIndex.cancel();
+            matchIndex = null;
+        }
+        TerminalItem root = getMatchIndexRoot();
+        if (matchIndexEnabled && searchEngine != null && root != null) {
+            TerminalSearchEngine e = searchEngine;
+            matchIndex = new TerminalTreeMatchIndex(tree, root, item -> matchPattern(e, item));
         }
     }
 
+    /** true if the match index has pending work */
+    public boolean isMatchIndexBuilding() {
+        TerminalTreeMatchIndex index = matchIndex;
+        return index != null && !index.isDone() && !index.isCanceled();
+    }
+
+    /** scans up to maxItems items for the match index on the thread of the view.
+     *  returns true if there is no more work.
+     *  It does nothing and returns false while a {@link TerminalTreeSearch} is running, as the search reads the tree */
+    public boolean buildMatchIndex(int maxItems) {
+        TerminalTreeMatchIndex index = matchIndex;
+        if (index == null) {
+            return true;
+        } else if (isSearchRunning()) {
+            return false;
+        } else {
+            return index.build(maxItems);
+        }
+    }
+
+    /** called by {@link TerminalTreeSearch#start()} */
+    public void setRunningSearch(TerminalTreeSearch runningSearch) {
+        this.runningSearch = runningSearch;
+    }
+
+    /** true if a {@link TerminalTreeSearch} of the view is running: the view must not read the tree until it is done */
+    public boolean isSearchRunning() {
+        TerminalTreeSearch s = runningSearch;
+        return s != null && !s.isDone();
+    }
+
+    /** the top ancestor of the origin */
+    protected TerminalItem getMatchIndexRoot() {
+        TerminalItem item = origin;
+        for (TerminalItem p = item; p != null; p = tree.getParent(p)) {
+            item = p;
+        }
+        return item;
+    }
+
+    public void setMatchIndexEnabled(boolean matchIndexEnabled) {
+        this.matchIndexEnabled = matchIndexEnabled;
+    }
+
+    public boolean isMatchIndexEnabled() {
+        return matchIndexEnabled;
+    }
+
+    /** the index of the current search, or null. it might be still building */
+    public TerminalTreeMatchIndex getMatchIndex() {
+        return matchIndex;
+    }
+
+    /** the index if it is completely built, or null */
+    public TerminalTreeMatchIndex getMatchIndexIfAvailable() {
+        TerminalTreeMatchIndex index = matchIndex;
+        return index != null && index.isAvailable() ? index : null;
+    }
+
+    /** queues a re-scan of matched items in the sub-tree of the item after a structural change of the tree.
+     *  the re-scan is done by {@link #buildMatchIndex(int)} */
+    public void updateMatchIndex(TerminalItem item) {
+        if (matchIndex != null) {
+            matchIndex.update(item);
+        }
+    }
+
+    /** the visible row of the k-th item of the match index, or -1 if it is hidden or there is no row index */
+    public long getMatchRow(int k) {
+        TerminalTreeMatchIndex index = matchIndex;
+        return index == null ? -1 : index.getRow(k, rowIndex);
+    }
+
     public boolean moveToSearchForward() {
-        if (getPattern() == null) {
+        if (searchEngine == null) {
             return false;
         } else {
             if (moveToSearchForwardOnDisplay()) {
@@ -903,11 +1546,12 @@ public class TerminalTreeView {
         }
     }
 
+    /** moves to a matched item after the cursor in displayed items */
     public boolean moveToSearchForwardOnDisplay() {
         int n = getCursorLine() + 1;
         List<DisplayItem> items = getDisplayItemsWithBuild(true);
         for (int e = items.size(); n < e; ++n) {
-            DisplayItem item = items.get(e);
+            DisplayItem item = items.get(n);
             if (!item.getLastMatchedRanges().isEmpty()) {
                 moveCursorTo(item.getItem());
                 return true;
@@ -917,28 +1561,53 @@ public class TerminalTreeView {
     }
 
     public boolean moveToSearchForwardNonDisplay() {
-        List<DisplayItem> items = getDisplayItemsWithBuild(false);
-        if (!items.isEmpty()) {
-            TerminalItem last = getItemOnCursor();
-            int step = 0;
-            while (last != null && !matchPattern(last)) {
-                if (!tree.isOpen(last)) {
-                    last = open(last, true);
-                }
-                last = tree.getNext(last);
-                ++step;
+        TerminalItem last = findSearchForwardNonDisplay(getSearchStartItem(), searchEngine, null);
+        if (last != null) {
+            openAncestorsAndMoveCursorTo(last);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /** the item on the cursor as the start of non-display searches, or null if nothing is displayed.
+     *  it needs to be obtained by the thread of the view */
+    public TerminalItem getSearchStartItem() {
+        return getDisplayItemsWithBuild(false).isEmpty() ? null : getItemOnCursor();
+    }
+
+    /**
+     * finds a matched item of the engine after the start in the entire tree,
+     *  by a {@link TerminalTreeCursor.LogicalCursor} without changing the open state.
+     *  If the search is non-null, it is notified of each visited item
+     *   and the method returns null when the search is canceled.
+     *  The method does not use the state of the view, thus it can be called from a worker thread of the search.
+     *  However, reading a lazily loaded tree constructs its children:
+     *   the worker must be the only reader of the tree until it is done (see {@link TerminalTreeSearch}).
+     */
+    public TerminalItem findSearchForwardNonDisplay(TerminalItem start, TerminalSearchEngine engine, TerminalTreeSearch search) {
+        if (start == null || engine == null) {
+            return null;
+        }
+        TerminalTreeCursor cursor = makeLogicalCursor(start);
+        TerminalItem last = cursor.getItem();
+        int step = 0;
+        while (last != null) {
+            if (search != null && !search.step()) {
+                return null;
             }
-            ConsoleLogger.log("after: " + step + " last: " + last);
-            if (last != null) {
-                moveCursorTo(last);
-                return true;
+            last = cursor.next() ? cursor.getItem() : null;
+            ++step;
+            if (last != null && matchPattern(engine, last)) {
+                break;
             }
         }
-        return false;
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, "after: {} last: {}", step, last);
+        return last;
     }
 
     public boolean moveToSearchBackward() {
-        if (getPattern() == null) {
+        if (searchEngine == null) {
             return false;
         } else {
             if (moveToSearchBackwardOnDisplay()) {
@@ -948,9 +1617,10 @@ public class TerminalTreeView {
         }
     }
 
+    /** moves to a matched item before the cursor in displayed items */
     public boolean moveToSearchBackwardOnDisplay() {
-        int n = getCursorLine() + 1;
         List<DisplayItem> items = getDisplayItemsWithBuild(true);
+        int n = Math.min(getCursorLine(), items.size()) - 1;
         for (; n >= 0; --n) {
             DisplayItem item = items.get(n);
             if (!item.getLastMatchedRanges().isEmpty()) {
@@ -962,40 +1632,105 @@ public class TerminalTreeView {
     }
 
     public boolean moveToSearchBackwardNonDisplay() {
-        List<DisplayItem> items = getDisplayItemsWithBuild(false);
-        if (!items.isEmpty()) {
-            TerminalItem last = getItemOnCursor();
-            int step = 0;
-            while (last != null && !matchPattern(last)) {
-                last = tree.getPrevious(last);
-                ++step;
-            }
-            ConsoleLogger.log("after: " + step + " last: " + last);
-            if (last != null) {
-                moveCursorTo(last);
-                return true;
+        TerminalItem last = findSearchBackwardNonDisplay(getSearchStartItem(), searchEngine, null);
+        if (last != null) {
+            openAncestorsAndMoveCursorTo(last);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /** finds a matched item of the engine before the start in the entire tree.
+     *  the arguments are used as {@link #findSearchForwardNonDisplay(TerminalItem, TerminalSearchEngine, TerminalTreeSearch)} */
+    public TerminalItem findSearchBackwardNonDisplay(TerminalItem start, TerminalSearchEngine engine, TerminalTreeSearch search) {
+        if (start == null || engine == null) {
+            return null;
+        }
+        TerminalTreeCursor cursor = makeLogicalCursor(start);
+        TerminalItem last = cursor.getItem();
+        int step = 0;
+        while (last != null) {
+            if (search != null && !search.step()) {
+                return null;
+            }
+            last = cursor.previous() ? cursor.getItem() : null;
+            ++step;
+            if (last != null && matchPattern(engine, last)) {
+                break;
             }
         }
-        return false;
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, "after: {} last: {}", step, last);
+        return last;
+    }
+
+    /** opens closed ancestors of the item from the top, and moves the cursor to the item */
+    public void openAncestorsAndMoveCursorTo(TerminalItem item) {
+        if (item == null) {
+            return;
+        }
+        List<TerminalItem> closed = new ArrayList<>();
+        for (TerminalItem p = tree.getParent(item); p != null; p = tree.getParent(p)) {
+            if (!tree.isOpen(p)) {
+                closed.add(p);
+            }
+        }
+        for (int i = closed.size() - 1; i >= 0; --i) {
+            open(closed.get(i), true);
+        }
+        moveCursorTo(item);
     }
 
     public boolean matchPattern(TerminalItem item) {
-        List<List<AttributedString>> itemTokens = tree.getColumnTokens(item);
-        return itemTokens.stream()
-                .flatMap(List::stream)
-                .anyMatch(c -> pattern.matcher(c).find());
+        return matchPattern(searchEngine, item);
+    }
+
+    /** the method can be called from another thread while it is the only reader of the tree */
+    public boolean matchPattern(TerminalSearchEngine searchEngine, TerminalItem item) {
+        for (List<AttributedString> tokens : tree.getColumnTokens(item)) {
+            for (AttributedString token : tokens) {
+                if (searchEngine.find(token)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void setSearchEngine(TerminalSearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+        updateHighlighter();
+    }
+
+    public TerminalSearchEngine getSearchEngine() {
+        return searchEngine;
     }
 
     public void setPattern(Pattern pattern) {
-        this.pattern = pattern;
+        setSearchEngine(TerminalSearchEngine.regex(pattern));
     }
 
+    /** the regex of the current search, or null if it is not a regex search */
     public Pattern getPattern() {
-        return pattern;
+        return searchEngine instanceof TerminalSearchEngine.RegexEngine ?
+                ((TerminalSearchEngine.RegexEngine) searchEngine).getPattern() : null;
+    }
+
+    /** re-creates the highlighter with an empty cache if the search or the style is changed */
+    protected void updateHighlighter() {
+        if (!highlighter.isSame(searchEngine, patternStyle)) {
+            highlighter = new TerminalMatchHighlighter(searchEngine, patternStyle);
+            needToUpdateDisplay = true;
+        }
+    }
+
+    public TerminalMatchHighlighter getHighlighter() {
+        return highlighter;
     }
 
     public void setPatternStyle(AttributedStyle patternStyle) {
         this.patternStyle = patternStyle;
+        updateHighlighter();
     }
 
     public AttributedStyle getPatternStyle() {
@@ -3,7 +3,6 @@ package org.jline.utils;
 import org.jline.terminal.Terminal;
 import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStyle;
-import org.jline.utils.InfoCmp;
 import org.jline.utils.WCWidth;
 
 import java.util.ArrayList;
@@ -19,89 +18,22 @@ public abstract class AttributedCharSequenceEx implements CharSequence {
     }
 
     public String toAnsi(Terminal terminal) {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(length() + 16);
+        toAnsi(terminal, sb);
+        return sb.toString();
+    }
+
+    /** appends the ANSI string into the buffer by {@link AttributedStyleEncoder} */
+    public void toAnsi(Terminal terminal, StringBuilder sb) {
+        AttributedStyleEncoder encoder = AttributedStyleEncoder.get(terminal);
         int style = 0;
-        Integer max_colors = terminal == null ? Integer.valueOf(8)
-                : terminal.getNumericCapability(InfoCmp.Capability.max_colors);
-        boolean color8 = max_colors != null && max_colors >= 8;
-        boolean color256 = max_colors != null && max_colors >= 256;
         for (int i = 0; i < length(); i++) {
-            char c = charAt(i);
-            int  s = styleCodeAt(i) & ~F_HIDDEN; // The hidden flag does not change the ansi styles
-            int  d = (style ^ s) & (MASK | FG_COLOR | BG_COLOR);
-            if (d != 0 && (color8 || color256)) {
-                if (s == 0) {
-                    sb.append("\033[0m");
-                } else {
-                    sb.append("\033[");
-                    boolean first = true;
-                    if ((d & (F_BOLD | F_FAINT)) != 0) {
-                        first = attr(sb, (s & F_BOLD) != 0 ? "1" : (s & F_FAINT) != 0 ? "2" : "22", first);
-                    }
-                    if ((d & F_ITALIC) != 0) {
-                        first = attr(sb, (s & F_ITALIC) != 0 ? "3" : "23", first);
-                    }
-                    if ((d & F_UNDERLINE) != 0) {
-                        first = attr(sb, (s & F_UNDERLINE) != 0 ? "4" : "24", first);
-                    }
-                    if ((d & F_BLINK) != 0) {
-                        first = attr(sb, (s & F_BLINK) != 0 ? "5" : "25", first);
-                    }
-                    if ((d & F_INVERSE) != 0) {
-                        first = attr(sb, (s & F_INVERSE) != 0 ? "7" : "27", first);
-                    }
-                    if ((d & F_CONCEAL) != 0) {
-                        first = attr(sb, (s & F_CONCEAL) != 0 ? "8" : "28", first);
-                    }
-                    if ((d & F_CROSSED_OUT) != 0) {
-                        first = attr(sb, (s & F_CROSSED_OUT) != 0 ? "9" : "29", first);
-                    }
-                    if ((d & (F_FOREGROUND | FG_COLOR)) != 0) {
-                        if ((s & F_FOREGROUND) != 0) {
-                            int col = (s & FG_COLOR) >>> FG_COLOR_EXP;
-                            if (col < 8 || !color256) {
-                                first = attr(sb, Integer.toString(30 + roundTo8Color(col)), first);
-                            } else {
-                                first = attr(sb, "38;5;" + Integer.toString(col), first);
-                            }
-                        } else {
-                            first = attr(sb, "39", first);
-                        }
-                    }
-                    if ((d & (F_BACKGROUND | BG_COLOR)) != 0) {
-                        if ((s & F_BACKGROUND) != 0) {
-                            int col = (s & BG_COLOR) >>> BG_COLOR_EXP;
-                            if (col < 8 || !color256) {
-                                first = attr(sb, Integer.toString(40 + roundTo8Color(col)), first);
-                            } else {
-                                first = attr(sb, "48;5;" + Integer.toString(col), first);
-                            }
-                        } else {
-                            first = attr(sb, "49", first);
-                        }
-                    }
-                    sb.append("m");
-                }
-                style = s;
-            }
-            sb.append(c);
+            style = encoder.appendTransition(style, styleCodeAt(i), sb);
+            sb.append(charAt(i));
         }
         if (style != 0) {
             sb.append("\033[0m");
         }
-        return sb.toString();
-    }
-
-    private static int roundTo8Color(int col) {
-        return col % 8;
-    }
-
-    private static boolean attr(StringBuilder sb, String s, boolean first) {
-        if (!first) {
-            sb.append(";");
-        }
-        sb.append(s);
-        return false;
     }
 
     public abstract AttributedStyle styleAt(int index);
@@ -247,4 +179,14 @@ public abstract class AttributedCharSequenceEx implements CharSequence {
         return substring(0, length());
     }
 
+    /** an accessor for the package-private style code of a jline's sequence */
+    public static int styleCodeAt(AttributedCharSequence str, int index) {
+        return str.styleCodeAt(index);
+    }
+
+    /** constructs a string sharing the given buffers without copying */
+    public static AttributedString newAttributedString(char[] buffer, int[] style, int start, int end) {
+        return new AttributedString(buffer, style, start, end);
+    }
+
 }
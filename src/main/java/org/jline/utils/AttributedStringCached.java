@@ -0,0 +1,148 @@
+package org.jline.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jline.utils.AttributedStyle.F_HIDDEN;
+
+/**
+ * An {@link AttributedString} caching its column length, sharing buffers of the source string.
+ * <pre>
+ *     AttributedString token = AttributedStringCached.of(src); //scans src once
+ *     token.columnLength();           //O(1)
+ *     token.columnSubSequence(s, e);  //O(1) if the string is ASCII
+ * </pre>
+ *  A string is ASCII if all chars are printable ASCII (0x20-0x7E) and no chars are hidden:
+ *   then each char takes a column and a column index equals a char index.
+ *  Other strings fall back to the scan of {@link AttributedCharSequence#columnSubSequence(int, int)}.
+ *  <p>
+ *  {@link #equals(Object)} compares contents with any {@link AttributedString},
+ *   but note that {@link AttributedString#equals(Object)} of jline returns false for the subclass.
+ */
+public class AttributedStringCached extends AttributedString {
+    protected final boolean ascii;
+    protected final int columnLength;
+
+    /** returns the str itself if it is already cached */
+    public static AttributedStringCached of(AttributedString str) {
+        if (str instanceof AttributedStringCached) {
+            return (AttributedStringCached) str;
+        }
+        return new AttributedStringCached(str.buffer, str.style, str.start, str.end);
+    }
+
+    /** converts each element by {@link #of(AttributedString)} */
+    public static List<AttributedString> of(List<AttributedString> strs) {
+        List<AttributedString> cs = new ArrayList<>(strs.size());
+        for (AttributedString s : strs) {
+            cs.add(of(s));
+        }
+        return cs;
+    }
+
+    /** the shared buffer of the str for reading chars without copying: chars of the str are in [getStart(str), getStart(str) + str.length()) */
+    public static char[] getBuffer(AttributedString str) {
+        return str.buffer;
+    }
+
+    public static int getStart(AttributedString str) {
+        return str.start;
+    }
+
+    /**
+     * a copy of the str with the style applied to char ranges {start0, end0, start1, end1, ...}
+     *  in the same way as {@link AttributedString#styleMatches(java.util.regex.Pattern, AttributedStyle)},
+     *  but without matching again. returns the cached str itself if the ranges are empty
+     */
+    public static AttributedStringCached styleRanges(AttributedString str, int[] ranges, AttributedStyle style) {
+        if (ranges.length == 0) {
+            return of(str);
+        }
+        int len = str.end - str.start;
+        char[] buffer = Arrays.copyOfRange(str.buffer, str.start, str.end);
+        int[] styles = Arrays.copyOfRange(str.style, str.start, str.end);
+        int mask = ~style.getMask();
+        int code = style.getStyle();
+        for (int r = 0; r + 1 < ranges.length; r += 2) {
+            for (int i = Math.max(0, ranges[r]), e = Math.min(len, ranges[r + 1]); i < e; ++i) {
+                styles[i] = (styles[i] & mask) | code;
+            }
+        }
+        return new AttributedStringCached(buffer, styles, 0, len);
+    }
+
+    AttributedStringCached(char[] buffer, int[] style, int start, int end) {
+        super(buffer, style, start, end);
+        boolean a = true;
+        for (int i = start; i < end && a; ++i) {
+            char c = buffer[i];
+            a = (c >= 0x20 && c < 0x7F && (style[i] & F_HIDDEN) == 0);
+        }
+        ascii = a;
+        columnLength = a ? end - start : super.columnLength();
+    }
+
+    AttributedStringCached(char[] buffer, int[] style, int start, int end, boolean ascii, int columnLength) {
+        super(buffer, style, start, end);
+        this.ascii = ascii;
+        this.columnLength = columnLength;
+    }
+
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    @Override
+    public int columnLength() {
+        return columnLength;
+    }
+
+    @Override
+    public AttributedString columnSubSequence(int start, int stop) {
+        if (!ascii) {
+            return super.columnSubSequence(start, stop);
+        }
+        int len = end - this.start;
+        int b = Math.min(Math.max(start, 0), len);
+        int e = Math.min(Math.max(stop, b), len);
+        return new AttributedStringCached(buffer, style, this.start + b, this.start + e, true, e - b);
+    }
+
+    /** the char index of the column, or -1 if it is not ASCII */
+    public int columnToIndex(int column) {
+        return ascii ? Math.min(Math.max(column, 0), end - start) : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttributedString)) {
+            return false;
+        }
+        AttributedString that = (AttributedString) o;
+        int len = end - start;
+        if (len != that.end - that.start) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (buffer[start + i] != that.buffer[that.start + i] ||
+                    style[start + i] != that.style[that.start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** by the contents in the range: jline's hash code depends on the whole shared buffer */
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = start; i < end; ++i) {
+            h = 31 * (31 * h + buffer[i]) + style[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,273 @@
+package org.jline.utils;
+
+import org.jline.terminal.Terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static org.jline.utils.AttributedStyle.*;
+
+/**
+ * An encoder of style transitions into SGR escape sequences, with precomputed sequences.
+ * <pre>
+ *     AttributedStyleEncoder encoder = AttributedStyleEncoder.get(terminal); //cached for the terminal
+ *     StringBuilder buf = ...;           //or a ByteArrayOutputStream
+ *     encoder.append(str, buf);          //the same as the original AttributedCharSequenceEx.toAnsi(terminal)
+ * </pre>
+ *  The max_colors capability is queried once for each terminal.
+ *  Parameters of all 256 foreground and background colors and on/off parameters of attributes are
+ *   precomputed as strings and UTF-8 bytes, and encoding into a given buffer allocates nothing
+ *   except for the growth of the buffer.
+ *  The only difference from the original {@link AttributedCharSequenceEx#toAnsi()} is that
+ *   turning off bold or faint emits "22" followed by the remaining intensity.
+ *   Bright colors 8..15 are "38;5;n" as the original, while jline's toAnsi emits "9n" and "10n".
+ */
+public final class AttributedStyleEncoder {
+    private static final Map<Terminal, AttributedStyleEncoder> encoders = new WeakHashMap<>();
+
+    /** index: color. "3n" or "38;5;n" */
+    private static final String[] FG = new String[256];
+    private static final String[] BG = new String[256];
+    /** index: color. "3(n%8)" */
+    private static final String[] FG8 = new String[256];
+    private static final String[] BG8 = new String[256];
+    /** attributes: bold, faint, italic, underline, blink, inverse, conceal and crossed-out.
+     *  bold and faint are turned off together by "22" */
+    private static final int[] ATTR_MASKS = {F_BOLD, F_FAINT, F_ITALIC, F_UNDERLINE, F_BLINK, F_INVERSE, F_CONCEAL, F_CROSSED_OUT};
+    private static final String[] ATTR_OFF = {"22", "22", "23", "24", "25", "27", "28", "29"};
+    private static final String[] ATTR_ON = {"1", "2", "3", "4", "5", "7", "8", "9"};
+
+    private static final String START = "\033[";
+    private static final String RESET = "\033[0m";
+
+    private static final byte[][] FG_BYTES;
+    private static final byte[][] BG_BYTES;
+    private static final byte[][] FG8_BYTES;
+    private static final byte[][] BG8_BYTES;
+    private static final byte[][] ATTR_OFF_BYTES;
+    private static final byte[][] ATTR_ON_BYTES;
+    private static final byte[] START_BYTES = bytes(START);
+    private static final byte[] RESET_BYTES = bytes(RESET);
+    private static final byte[] FG_DEFAULT_BYTES = bytes("39");
+    private static final byte[] BG_DEFAULT_BYTES = bytes("49");
+
+    static {
+        for (int col = 0; col < 256; ++col) {
+            FG8[col] = Integer.toString(30 + col % 8);
+            BG8[col] = Integer.toString(40 + col % 8);
+            FG[col] = col < 8 ? FG8[col] : "38;5;" + col;
+            BG[col] = col < 8 ? BG8[col] : "48;5;" + col;
+        }
+        FG_BYTES = bytes(FG);
+        BG_BYTES = bytes(BG);
+        FG8_BYTES = bytes(FG8);
+        BG8_BYTES = bytes(BG8);
+        ATTR_OFF_BYTES = bytes(ATTR_OFF);
+        ATTR_ON_BYTES = bytes(ATTR_ON);
+    }
+
+    /** initialized after the tables above */
+    private static final AttributedStyleEncoder DEFAULT_ENCODER = new AttributedStyleEncoder(8);
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] bytes(String[] ss) {
+        byte[][] bs = new byte[ss.length][];
+        for (int i = 0; i < ss.length; ++i) {
+            bs[i] = bytes(ss[i]);
+        }
+        return bs;
+    }
+
+    private final boolean color;
+    private final String[] fg;
+    private final String[] bg;
+    private final byte[][] fgBytes;
+    private final byte[][] bgBytes;
+
+    /** the encoder for the max_colors of the terminal. null means 8 colors like {@link AttributedCharSequence#toAnsi()} */
+    public static AttributedStyleEncoder get(Terminal terminal) {
+        if (terminal == null) {
+            return DEFAULT_ENCODER;
+        }
+        synchronized (encoders) {
+            return encoders.computeIfAbsent(terminal, t -> {
+                Integer maxColors = t.getNumericCapability(InfoCmp.Capability.max_colors);
+                return new AttributedStyleEncoder(maxColors == null ? 0 : maxColors);
+            });
+        }
+    }
+
+    public AttributedStyleEncoder(int maxColors) {
+        color = maxColors >= 8;
+        boolean color256 = maxColors >= 256;
+        fg = color256 ? FG : FG8;
+        bg = color256 ? BG : BG8;
+        fgBytes = color256 ? FG_BYTES : FG8_BYTES;
+        bgBytes = color256 ? BG_BYTES : BG8_BYTES;
+    }
+
+    /** false if the terminal has no colors: no sequences are emitted */
+    public boolean isColor() {
+        return color;
+    }
+
+    /** appends the string with SGR sequences, and a reset at the end */
+    public void append(AttributedCharSequence str, StringBuilder out) {
+        int style = append(str, 0, str.length(), 0, out);
+        if (style != 0) {
+            out.append(RESET);
+        }
+    }
+
+    /** appends the string with SGR sequences as UTF-8, and a reset at the end */
+    public void append(AttributedCharSequence str, ByteArrayOutputStream out) {
+        int style = append(str, 0, str.length(), 0, out);
+        if (style != 0) {
+            out.write(RESET_BYTES, 0, RESET_BYTES.length);
+        }
+    }
+
+    /** appends the range from the current style without a reset, and returns the style at the end */
+    public int append(AttributedCharSequence str, int start, int end, int style, StringBuilder out) {
+        for (int i = start; i < end; ++i) {
+            style = appendTransition(style, str.styleCodeAt(i), out);
+            out.append(str.charAt(i));
+        }
+        return style;
+    }
+
+    /** appends the range from the current style without a reset, and returns the style at the end */
+    public int append(AttributedCharSequence str, int start, int end, int style, ByteArrayOutputStream out) {
+        for (int i = start; i < end; ++i) {
+            style = appendTransition(style, str.styleCodeAt(i), out);
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                out.write(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                ++i;
+                appendUtf8(Character.toCodePoint(c, str.charAt(i)), out);
+            } else {
+                appendUtf8(c, out);
+            }
+        }
+        return style;
+    }
+
+    private static void appendUtf8(int cp, ByteArrayOutputStream out) {
+        if (cp < 0x800) {
+            out.write(0xC0 | (cp >>> 6));
+            out.write(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            if (Character.isSurrogate((char) cp)) {
+                out.write('?');
+                return;
+            }
+            out.write(0xE0 | (cp >>> 12));
+            out.write(0x80 | ((cp >>> 6) & 0x3F));
+            out.write(0x80 | (cp & 0x3F));
+        } else {
+            out.write(0xF0 | (cp >>> 18));
+            out.write(0x80 | ((cp >>> 12) & 0x3F));
+            out.write(0x80 | ((cp >>> 6) & 0x3F));
+            out.write(0x80 | (cp & 0x3F));
+        }
+    }
+
+    /** appends a sequence changing the style code "from" to "to", and returns the new current style.
+     *   the hidden flag does not change the sequence */
+    public int appendTransition(int from, int to, StringBuilder out) {
+        int s = to & ~F_HIDDEN;
+        int d = (from ^ s) & (MASK | FG_COLOR | BG_COLOR);
+        if (d == 0 || !color) {
+            return from;
+        }
+        if (s == 0) {
+            out.append(RESET);
+            return s;
+        }
+        out.append(START);
+        boolean first = true;
+        boolean intensityOff = (from & ~s & (F_BOLD | F_FAINT)) != 0;
+        if (intensityOff) {
+            first = param(out, first);
+            out.append(ATTR_OFF[0]);
+        }
+        for (int a = 0; a < ATTR_MASKS.length; ++a) {
+            int m = ATTR_MASKS[a];
+            if (a < 2 ? (s & m) != 0 && (intensityOff || (d & m) != 0) : (d & m) != 0) {
+                first = param(out, first);
+                out.append((s & m) != 0 ? ATTR_ON[a] : ATTR_OFF[a]);
+            }
+        }
+        if ((d & (F_FOREGROUND | FG_COLOR)) != 0) {
+            first = param(out, first);
+            out.append((s & F_FOREGROUND) != 0 ? fg[(s & FG_COLOR) >>> FG_COLOR_EXP] : "39");
+        }
+        if ((d & (F_BACKGROUND | BG_COLOR)) != 0) {
+            param(out, first);
+            out.append((s & F_BACKGROUND) != 0 ? bg[(s & BG_COLOR) >>> BG_COLOR_EXP] : "49");
+        }
+        out.append('m');
+        return s;
+    }
+
+    /** appends a sequence changing the style code "from" to "to", and returns the new current style */
+    public int appendTransition(int from, int to, ByteArrayOutputStream out) {
+        int s = to & ~F_HIDDEN;
+        int d = (from ^ s) & (MASK | FG_COLOR | BG_COLOR);
+        if (d == 0 || !color) {
+            return from;
+        }
+        if (s == 0) {
+            out.write(RESET_BYTES, 0, RESET_BYTES.length);
+            return s;
+        }
+        out.write(START_BYTES, 0, START_BYTES.length);
+        boolean first = true;
+        boolean intensityOff = (from & ~s & (F_BOLD | F_FAINT)) != 0;
+        if (intensityOff) {
+            first = param(out, first);
+            write(out, ATTR_OFF_BYTES[0]);
+        }
+        for (int a = 0; a < ATTR_MASKS.length; ++a) {
+            int m = ATTR_MASKS[a];
+            if (a < 2 ? (s & m) != 0 && (intensityOff || (d & m) != 0) : (d & m) != 0) {
+                first = param(out, first);
+                write(out, (s & m) != 0 ? ATTR_ON_BYTES[a] : ATTR_OFF_BYTES[a]);
+            }
+        }
+        if ((d & (F_FOREGROUND | FG_COLOR)) != 0) {
+            first = param(out, first);
+            write(out, (s & F_FOREGROUND) != 0 ? fgBytes[(s & FG_COLOR) >>> FG_COLOR_EXP] : FG_DEFAULT_BYTES);
+        }
+        if ((d & (F_BACKGROUND | BG_COLOR)) != 0) {
+            param(out, first);
+            write(out, (s & F_BACKGROUND) != 0 ? bgBytes[(s & BG_COLOR) >>> BG_COLOR_EXP] : BG_DEFAULT_BYTES);
+        }
+        out.write('m');
+        return s;
+    }
+
+    private static boolean param(StringBuilder out, boolean first) {
+        if (!first) {
+            out.append(';');
+        }
+        return false;
+    }
+
+    private static boolean param(ByteArrayOutputStream out, boolean first) {
+        if (!first) {
+            out.write(';');
+        }
+        return false;
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] bs) {
+        out.write(bs, 0, bs.length);
+    }
+}
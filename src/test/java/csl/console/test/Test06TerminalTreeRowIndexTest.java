@@ -0,0 +1,72 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test06TerminalTreeRowIndexTest {
+    @Test
+    public void test() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        build(root, 0, items);
+
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeRowIndex index = new TerminalTreeRowIndex(tree);
+        index.setRootFrom(items.get(0));
+        Assert.assertEquals("root", root, index.getRoot());
+        check(root, tree, index);
+
+        Random random = new Random(12345);
+        for (int i = 0; i < 200; ++i) {
+            TerminalItem item = items.get(random.nextInt(items.size()));
+            if (tree.isOpen(item)) {
+                tree.close(item);
+            } else {
+                tree.open(item);
+            }
+            index.update(item);
+            if (i % 10 == 0) {
+                check(root, tree, index);
+            }
+        }
+        check(root, tree, index);
+
+        items.forEach(tree::open);
+        index.invalidate();
+        check(root, tree, index);
+        Assert.assertEquals("all rows", items.size() + 1, index.getRowCount());
+    }
+
+    private void check(TerminalItem root, TerminalTree tree, TerminalTreeRowIndex index) {
+        List<TerminalItem> rows = new ArrayList<>();
+        for (TerminalItem item = root; item != null; item = tree.getNext(item)) {
+            rows.add(item);
+        }
+        Assert.assertEquals("row count", rows.size(), index.getRowCount());
+        for (int i = 0; i < rows.size(); ++i) {
+            Assert.assertEquals("item at " + i, rows.get(i), index.getItemAt(i));
+            Assert.assertEquals("row of " + i, i, index.getRow(rows.get(i)));
+        }
+        Assert.assertNull("out of range", index.getItemAt(rows.size()));
+    }
+
+    public static void build(TerminalItemNode parent, int dep, List<TerminalItem> items) {
+        for (int i = 0; i < 5; ++i) {
+            TerminalItemNode node = new TerminalItemNode()
+                    .withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("dep-" + dep + "-node-" + i));
+            parent.addChild(node);
+            items.add(node);
+            if (dep < 3) {
+                build(node, dep + 1, items);
+            }
+            TerminalItemLine l = new TerminalItemLine(
+                    TerminalItemLine.toSingleStringColumnsFromStrings("item-" + i));
+            parent.addChild(l);
+            items.add(l);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test07TerminalTreeCursorTest {
+    @Test
+    public void test() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        Random random = new Random(54321);
+        for (TerminalItem item : items) {
+            if (random.nextInt(3) != 0) {
+                tree.open(item);
+            }
+        }
+
+        TerminalTreeCursor cursor = new TerminalTreeCursor(tree, root);
+        TerminalItem expected = root;
+        int count = 0;
+        do {
+            Assert.assertEquals("forward " + count, expected, cursor.getItem());
+            Assert.assertEquals("depth " + count, tree.getDepth(expected), cursor.getDepth());
+            expected = tree.getNext(expected);
+            ++count;
+        } while (cursor.next());
+        Assert.assertNull("forward end", expected);
+        TerminalItem last = cursor.getItem();
+
+        expected = last;
+        int backCount = 0;
+        do {
+            Assert.assertEquals("backward " + backCount, expected, cursor.getItem());
+            expected = tree.getPrevious(expected);
+            ++backCount;
+        } while (cursor.previous());
+        Assert.assertNull("backward end", expected);
+        Assert.assertEquals("same count", count, backCount);
+
+        for (TerminalItem item : items) {
+            TerminalTreeCursor c = new TerminalTreeCursor(tree, item);
+            Assert.assertEquals("position of " + item, tree.getChildren(tree.getParent(item)).indexOf(item), c.getPosition());
+            Assert.assertEquals("next of " + item, tree.getNext(item), c.next() ? c.getItem() : null);
+            c.reset(item);
+            Assert.assertEquals("previous of " + item, tree.getPrevious(item), c.previous() ? c.getItem() : null);
+            c.reset(item);
+            Assert.assertEquals("upper next of " + item, tree.getUpperNext(item), c.upperNext() ? c.getItem() : null);
+        }
+    }
+
+    @Test
+    public void testSiblingsByList() {
+        int[] calls = new int[1];
+        TerminalTreeBase tree = new TerminalTreeBase() {
+            @Override
+            public List<TerminalItem> getChildren(TerminalItem item) {
+                calls[0]++;
+                return super.getChildren(item);
+            }
+        };
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        for (int i = 0; i < 1000; ++i) {
+            root.addChild(new TerminalItemLine().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("c" + i)));
+        }
+        tree.open(root);
+        TerminalTreeCursor cursor = new TerminalTreeCursor(tree, root);
+        int count = 0;
+        while (cursor.next()) {
+            Assert.assertSame("forward " + count, root.getChildren().get(count), cursor.getItem());
+            Assert.assertEquals("position " + count, count, cursor.getPosition());
+            ++count;
+        }
+        while (cursor.previous()) {
+            --count;
+            Assert.assertEquals("backward position " + count, count - 1, cursor.getPosition());
+        }
+        Assert.assertEquals("backward end", 0, count);
+        Assert.assertTrue("children are obtained per entering: " + calls[0], calls[0] < 10);
+    }
+
+    @Test
+    public void testHandles() {
+        TerminalTreeArray tree = new TerminalTreeArray();
+        int root = tree.addNode(-1, "root");
+        Random random = new Random(7);
+        List<Integer> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < 500; ++i) {
+            int n = tree.addNode(nodes.get(random.nextInt(nodes.size())), "n" + i);
+            nodes.add(n);
+            if (random.nextInt(3) != 0) {
+                tree.open(tree.getItem(n));
+            }
+        }
+        tree.open(tree.getItem(root));
+
+        TerminalTreeCursor cursor = new TerminalTreeCursor(tree, tree.getItem(root));
+        TerminalItem expected = tree.getItem(root);
+        do {
+            Assert.assertEquals("forward", expected, cursor.getItem());
+            expected = tree.getNext(expected);
+        } while (cursor.next());
+        Assert.assertNull("forward end", expected);
+
+        expected = cursor.getItem();
+        do {
+            Assert.assertEquals("backward", expected, cursor.getItem());
+            expected = tree.getPrevious(expected);
+        } while (cursor.previous());
+        Assert.assertNull("backward end", expected);
+
+        TerminalTreeCursor logical = new TerminalTreeCursor.LogicalCursor(tree, tree.getItem(root));
+        int count = 1;
+        while (logical.next()) {
+            int id = tree.getId(logical.getItem());
+            int position = 0;
+            for (int s = tree.getPreviousSibling(id); s >= 0; s = tree.getPreviousSibling(s)) {
+                ++position;
+            }
+            Assert.assertEquals("logical position " + id, position, logical.getPosition());
+            ++count;
+        }
+        Assert.assertEquals("logical count", nodes.size(), count);
+    }
+
+    @Test
+    public void testDeep() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalItemNode node = root;
+        int depth = 100000;
+        for (int i = 0; i < depth; ++i) {
+            TerminalItemNode child = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("n" + i));
+            node.addChild(child);
+            tree.open(child);
+            node = child;
+        }
+        TerminalTreeCursor cursor = new TerminalTreeCursor(tree, root);
+        int count = 1;
+        while (cursor.next()) {
+            ++count;
+        }
+        Assert.assertEquals("deep forward", depth + 1, count);
+        Assert.assertEquals("deep depth", depth, cursor.getDepth());
+        Assert.assertNull("deep upper next", tree.getUpperNext(node));
+    }
+}
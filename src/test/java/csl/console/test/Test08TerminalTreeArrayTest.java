@@ -0,0 +1,81 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test08TerminalTreeArrayTest {
+    @Test
+    public void test() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+
+        TerminalTreeBase nodeTree = new TerminalTreeBase();
+        TerminalTreeArray arrayTree = new TerminalTreeArray(4);
+        Map<TerminalItem, Integer> ids = new HashMap<>();
+        ids.put(root, arrayTree.addNode(-1, root.getColumnTokens()));
+        for (TerminalItem item : items) {
+            int parent = ids.get(nodeTree.getParent(item));
+            ids.put(item, arrayTree.addNode(parent, ((TerminalItemLine) item).getColumnTokens()));
+        }
+        arrayTree.trimToSize();
+        Assert.assertEquals("size", items.size() + 1, arrayTree.size());
+
+        nodeTree.open(root);
+        arrayTree.open(arrayTree.getItem(0));
+        items.forEach(nodeTree::open);
+        items.forEach(i -> arrayTree.open(arrayTree.getItem(ids.get(i))));
+
+        TerminalItem a = arrayTree.getItem(0);
+        for (TerminalItem n = root; n != null; n = nodeTree.getNext(n)) {
+            Assert.assertEquals("item", arrayTree.getItem(ids.get(n)), a);
+            Assert.assertEquals("depth", nodeTree.getDepth(n), arrayTree.getDepth(a));
+            Assert.assertEquals("tokens", nodeTree.getColumnTokens(n), arrayTree.getColumnTokens(a));
+            List<TerminalItem> cs = nodeTree.getChildren(n);
+            Assert.assertEquals("children", cs == null ? 0 : cs.size(), arrayTree.getChildren(a).size());
+            Assert.assertEquals("sibling index", nodeTree.getSiblingIndex(n), arrayTree.getSiblingIndex(a));
+            a = arrayTree.getNext(a);
+        }
+        Assert.assertNull("end", a);
+
+        TerminalItem last = nodeTree.getLast(root);
+        Assert.assertEquals("last", arrayTree.getItem(ids.get(last)), arrayTree.getLast(arrayTree.getItem(0)));
+        Assert.assertEquals("previous", arrayTree.getItem(ids.get(nodeTree.getPrevious(last))),
+                arrayTree.getPrevious(arrayTree.getItem(ids.get(last))));
+    }
+
+    @Test
+    public void testStyles() {
+        AttributedStringBuilder buf = new AttributedStringBuilder();
+        buf.append("abc", AttributedStyle.BOLD);
+        buf.append("def", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+        buf.append("g");
+        AttributedString token = buf.toAttributedString();
+
+        List<List<AttributedString>> cols = new ArrayList<>();
+        cols.add(Arrays.asList(token, new AttributedString("x")));
+        cols.add(Collections.emptyList());
+        cols.add(Collections.singletonList(new AttributedString("")));
+
+        TerminalTreeArray tree = new TerminalTreeArray();
+        tree.withIndent(false);
+        int root = tree.addNode(-1, "r1", "r2");
+        int child = tree.addNode(root, cols);
+
+        List<List<AttributedString>> expected = new ArrayList<>();
+        expected.add(Arrays.asList(token, new AttributedString("x")));
+        expected.add(Collections.singletonList(new AttributedString("")));
+        expected.add(Collections.singletonList(new AttributedString("")));
+        Assert.assertEquals("styled tokens", expected, tree.getColumnTokens(child));
+        Assert.assertEquals("text", "r1 r2", tree.getText(root));
+        Assert.assertEquals("parent", tree.getItem(root), tree.getParent(tree.getItem(child)));
+        Assert.assertFalse("closed", tree.isOpen(tree.getItem(root)));
+        Assert.assertNull("next of closed", tree.getNext(tree.getItem(root)));
+    }
+}
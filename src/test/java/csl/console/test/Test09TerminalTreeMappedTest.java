@@ -0,0 +1,93 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class Test09TerminalTreeMappedTest {
+    @Test
+    public void test() throws Exception {
+        AttributedStringBuilder buf = new AttributedStringBuilder();
+        buf.append("root-", AttributedStyle.BOLD);
+        buf.append("\u3042\u3044", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED));
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(
+                TerminalItemLine.toSingleStringColumns(Arrays.asList(buf.toAttributedString(), new AttributedString("x"))));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+        TerminalTreeBase nodeTree = new TerminalTreeBase();
+
+        Path file = Files.createTempFile("tree", ".bin");
+        try {
+            long n = new TerminalTreeFileWriter().write(nodeTree, root, file);
+            Assert.assertEquals("nodes", items.size() + 1, n);
+
+            try (TerminalTreeMapped tree = new TerminalTreeMapped(file)) {
+                Assert.assertEquals("node count", n, tree.getNodeCount());
+                nodeTree.open(root);
+                items.forEach(nodeTree::open);
+                for (TerminalItem a = tree.getRoot(); a != null; a = tree.getNext(a)) {
+                    tree.open(a);
+                }
+
+                TerminalItem a = tree.getRoot();
+                for (TerminalItem i = root; i != null; i = nodeTree.getNext(i)) {
+                    Assert.assertNotNull("item", a);
+                    Assert.assertEquals("depth", nodeTree.getDepth(i), tree.getDepth(a));
+                    Assert.assertEquals("tokens", nodeTree.getColumnTokens(i), tree.getColumnTokens(a));
+                    TerminalItem p = tree.getPrevious(a);
+                    Assert.assertEquals("previous", nodeTree.getPrevious(i) == null, p == null);
+                    a = tree.getNext(a);
+                }
+                Assert.assertNull("end", a);
+                Assert.assertEquals("text", "root-\u3042\u3044 x", tree.getText(0));
+                Assert.assertEquals("last child", tree.getItem(tree.getLastChild(0)),
+                        tree.getChildren(tree.getRoot()).get(9));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFromArray() throws Exception {
+        TerminalTreeArray src = new TerminalTreeArray();
+        int root = src.addNode(-1, "root");
+        int p = root;
+        for (int i = 0; i < 1000; ++i) {
+            int c = src.addNode(p, "n" + i);
+            src.addNode(p, "s" + i);
+            p = c;
+        }
+        Path file = Files.createTempFile("tree", ".bin");
+        try {
+            new TerminalTreeFileWriter().write(src, src.getItem(root), file);
+            try (TerminalTreeMapped tree = new TerminalTreeMapped(file)) {
+                Assert.assertEquals("nodes", src.size(), tree.getNodeCount());
+                for (int id = 0; id < src.size(); ++id) {
+                    src.open(src.getItem(id));
+                    tree.open(tree.getItem(id));
+                }
+                TerminalItem a = tree.getRoot();
+                for (TerminalItem i = src.getItem(root); i != null; i = src.getNext(i)) {
+                    Assert.assertNotNull("item", a);
+                    Assert.assertEquals("text", src.getText(src.getId(i)), tree.getText(tree.getId(a)));
+                    Assert.assertEquals("depth", src.getDepth(i), tree.getDepth(a));
+                    Assert.assertEquals("children", src.getChildren(i).size(), tree.getChildren(a).size());
+                    Assert.assertEquals("sibling index", src.getSiblingIndex(i), tree.getSiblingIndex(a));
+                    a = tree.getNext(a);
+                }
+                Assert.assertNull("end", a);
+                Assert.assertEquals("last", "s0", tree.getText(tree.getId(tree.getLast(tree.getRoot()))));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test10TerminalOpenStateTest {
+    @Test
+    public void test() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+
+        TerminalTreeBase expected = new TerminalTreeBase();
+        List<TerminalTreeBase> trees = Arrays.asList(
+                new TerminalTreeBase().withOpenItems(new TerminalOpenState.IdentityOpenState()),
+                new TerminalTreeBase().withOpenItems(new TerminalOpenState.NodeFlagOpenState()));
+
+        Random random = new Random(1234);
+        for (int i = 0; i < 300; ++i) {
+            TerminalItem item = (i == 0 ? root : items.get(random.nextInt(items.size())));
+            boolean open = (i == 0 || random.nextBoolean());
+            for (TerminalTreeBase tree : trees) {
+                if (open) {
+                    tree.open(item);
+                } else {
+                    tree.close(item);
+                }
+            }
+            if (open) {
+                expected.open(item);
+            } else {
+                expected.close(item);
+            }
+            for (TerminalTreeBase tree : trees) {
+                Assert.assertEquals("open " + i, expected.isOpen(item), tree.isOpen(item));
+            }
+        }
+        for (TerminalTreeBase tree : trees) {
+            TerminalItem e = root;
+            for (TerminalItem a = root; a != null; a = tree.getNext(a)) {
+                Assert.assertSame("next", e, a);
+                e = expected.getNext(e);
+            }
+            Assert.assertNull("end", e);
+        }
+        Assert.assertEquals("flag", expected.isOpen(items.get(0)), ((TerminalItemNode) items.get(0)).isOpen());
+    }
+
+    @Test
+    public void testIds() {
+        TerminalTreeArray tree = new TerminalTreeArray();
+        int root = tree.addNode(-1, "root");
+        int child = tree.addNode(root, "child");
+        Assert.assertTrue("ids", tree.getOpenItems() instanceof TerminalOpenState.IdOpenState);
+        tree.open(tree.getItem(child));
+        Assert.assertTrue("open", tree.isOpen(tree.getItem(child)));
+        Assert.assertFalse("closed", tree.isOpen(tree.getItem(root)));
+        Assert.assertEquals("bits", 1, ((TerminalOpenState.IdOpenState) tree.getOpenItems()).getIds().cardinality());
+    }
+}
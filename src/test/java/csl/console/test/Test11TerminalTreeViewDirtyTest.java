@@ -0,0 +1,106 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.utils.AttributedString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test11TerminalTreeViewDirtyTest {
+    static class CountingTree extends TerminalTreeBase {
+        int tokens;
+
+        @Override
+        public List<List<AttributedString>> getColumnTokens(TerminalItem item) {
+            ++tokens;
+            return super.getColumnTokens(item);
+        }
+    }
+
+    @Test
+    public void test() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+        CountingTree tree = new CountingTree();
+        tree.open(root);
+        items.forEach(tree::open);
+
+        TerminalTreeView view = new TerminalTreeView(root, tree);
+        view.setHeight(11);
+        view.setWidth(80);
+        List<AttributedString> lines = new ArrayList<>(view.write().getLines());
+        Assert.assertEquals("initial", 10, tree.tokens);
+        check(view, root, tree);
+
+        tree.tokens = 0;
+        view.scrollToNextLineWithCursor();
+        List<AttributedString> moved = view.write().getLines();
+        Assert.assertEquals("cursor move", 0, tree.tokens);
+        int changed = 0;
+        for (int i = 0; i < lines.size(); ++i) {
+            if (!lines.get(i).equals(moved.get(i))) {
+                ++changed;
+            }
+        }
+        Assert.assertEquals("changed lines", 2, changed);
+        check(view, root, tree);
+
+        view.setCursorLine(9);
+        view.write();
+        tree.tokens = 0;
+        view.scrollToNextLineWithCursor();
+        view.write();
+        Assert.assertEquals("scroll", 1, tree.tokens);
+        check(view, view.getOrigin(), tree);
+
+        view.invalidateDisplayItems();
+        tree.tokens = 0;
+        view.write();
+        Assert.assertEquals("invalidate", 10, tree.tokens);
+    }
+
+    @Test
+    public void testCache() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+        CountingTree tree = new CountingTree();
+        tree.open(root);
+        items.forEach(tree::open);
+
+        TerminalTreeView view = new TerminalTreeView(root, tree);
+        view.setHeight(11);
+        view.write();
+        TerminalItem far = items.get(items.size() - 1);
+        view.moveCursorTo(far);
+        view.write();
+
+        tree.tokens = 0;
+        view.moveCursorTo(root);
+        view.write();
+        Assert.assertEquals("reused", 0, tree.tokens);
+        check(view, root, tree);
+
+        tree.tokens = 0;
+        view.setHeight(21);
+        view.write();
+        Assert.assertEquals("resized", 10, tree.tokens);
+
+        view.setDisplayItemCacheSize(0);
+        tree.tokens = 0;
+        view.moveCursorTo(far);
+        view.moveCursorTo(root);
+        view.write();
+        Assert.assertEquals("disabled", 20, tree.tokens);
+    }
+
+    private void check(TerminalTreeView view, TerminalItem origin, TerminalTree tree) {
+        TerminalTreeView fresh = new TerminalTreeView(origin, tree);
+        fresh.setHeight(view.getHeight() + 1);
+        fresh.setWidth(view.getWidth());
+        fresh.setCursorLine(view.getCursorLine());
+        Assert.assertEquals("lines", fresh.write().getLines(), view.write().getLines());
+    }
+}
@@ -0,0 +1,88 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class Test12TerminalTreeViewScrollTest {
+    @Test
+    public void test() {
+        check(false);
+    }
+
+    @Test
+    public void testRowIndex() {
+        check(true);
+    }
+
+    private void check(boolean rowIndex) {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> items = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, items);
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        items.forEach(tree::open);
+
+        TerminalTreeView bulk = view(root, tree, rowIndex);
+        TerminalTreeView single = view(root, tree, false);
+
+        Random random = new Random(123);
+        for (int i = 0; i < 300; ++i) {
+            int n = random.nextInt(81) - 40;
+            int scrolled = bulk.scrollBy(n);
+            int expected = 0;
+            for (int j = 0; j < Math.abs(n); ++j) {
+                if (n > 0 ? single.scrollToNextLine() : single.scrollToPreviousLine()) {
+                    ++expected;
+                }
+            }
+            Assert.assertEquals("scrolled " + i, expected, scrolled);
+            Assert.assertEquals("lines " + i, single.write().getLines(), bulk.write().getLines());
+        }
+
+        bulk.setPageSize(3);
+        TerminalItem origin = bulk.getOrigin();
+        bulk.scrollDownPage();
+        Assert.assertEquals("page", tree.getNext(tree.getNext(tree.getNext(origin))), bulk.getOrigin());
+    }
+
+    @Test
+    public void testHandles() {
+        TerminalTreeArray tree = new TerminalTreeArray();
+        int root = tree.addNode(-1, "root");
+        for (int i = 0; i < 300; ++i) {
+            tree.addNode(root, "n" + i);
+        }
+        tree.open(tree.getItem(root));
+        int[] cursors = new int[1];
+        TerminalTreeView view = new TerminalTreeView(tree.getItem(root), tree) {
+            @Override
+            protected TerminalTreeCursor makeCursor(TerminalItem item) {
+                cursors[0]++;
+                return super.makeCursor(item);
+            }
+        };
+        view.setHeight(11);
+        view.setWidth(80);
+        view.write();
+        for (int n : new int[] {100, -100, 100, -100}) {
+            for (int i = 0; i < Math.abs(n); ++i) {
+                Assert.assertTrue(n > 0 ? view.scrollToNextLine() : view.scrollToPreviousLine());
+            }
+            view.write();
+        }
+        Assert.assertTrue("cursors are kept for equal handles: " + cursors[0], cursors[0] < 50);
+    }
+
+    private TerminalTreeView view(TerminalItem root, TerminalTree tree, boolean rowIndex) {
+        TerminalTreeView view = new TerminalTreeView(root, tree);
+        if (rowIndex) {
+            view.setRowIndex(new TerminalTreeRowIndex(tree));
+        }
+        view.setHeight(11);
+        view.setWidth(80);
+        return view;
+    }
+}
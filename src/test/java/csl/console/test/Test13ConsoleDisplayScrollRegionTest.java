@@ -0,0 +1,63 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleDisplayScrollRegion;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.utils.AttributedString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.*;
+
+public class Test13ConsoleDisplayScrollRegionTest {
+    @Test
+    public void test() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PipedOutputStream in = new PipedOutputStream(); //keeps the input open
+        ExternalTerminal terminal = new ExternalTerminal("test", "xterm-256color",
+                new PipedInputStream(in), out, "UTF-8");
+        terminal.setSize(new Size(40, 10));
+        ConsoleDisplayScrollRegion display = new ConsoleDisplayScrollRegion(terminal, true);
+        Assert.assertTrue("supported", display.isSupported());
+        display.resize(10, 40);
+
+        display.update(frame(0), 0);
+        terminal.flush();
+        out.reset();
+
+        display.update(frame(1), 0);
+        terminal.flush();
+        String forward = out.toString("UTF-8");
+        Assert.assertEquals("forward", 1, display.getLastShift());
+        Assert.assertTrue("new row", forward.contains("line-9"));
+        Assert.assertFalse("kept row", forward.contains("line-5"));
+        out.reset();
+
+        display.update(frame(0), 0);
+        terminal.flush();
+        String reverse = out.toString("UTF-8");
+        Assert.assertEquals("reverse", -1, display.getLastShift());
+        Assert.assertTrue("new row", reverse.contains("line-1"));
+        Assert.assertFalse("kept row", reverse.contains("line-5"));
+        out.reset();
+
+        display.update(frame(0), 0);
+        Assert.assertEquals("same", 0, display.getLastShift());
+        in.close();
+        terminal.close();
+    }
+
+    /** header, 8 rows from the start and a status line */
+    private List<AttributedString> frame(int start) {
+        List<AttributedString> lines = new ArrayList<>();
+        lines.add(new AttributedString("header"));
+        for (int i = 0; i < 8; ++i) {
+            lines.add(new AttributedString("line-" + (start + i + 1)));
+        }
+        lines.add(new AttributedString("status " + start));
+        return lines;
+    }
+}
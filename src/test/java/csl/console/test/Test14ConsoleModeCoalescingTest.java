@@ -0,0 +1,108 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.keymap.BindingReader;
+import org.jline.keymap.KeyMap;
+import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.utils.NonBlockingReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+public class Test14ConsoleModeCoalescingTest {
+    static class CountingMode extends ConsoleMode {
+        int count;
+
+        @Override
+        protected KeyMap<ConsoleCommand> initCommands(ConsoleApplication app) {
+            KeyMap<ConsoleCommand> map = super.initCommands(app);
+            ConsoleCommand.command(a -> ++count, "Count", "")
+                    .addKeys('j')
+                    .bind(app, map);
+            return map;
+        }
+    }
+
+    static class TestApp extends ConsoleApplication {
+        TestApp(ConsoleMode mode, ExternalTerminal terminal, Reader input) {
+            super(mode);
+            this.terminal = terminal;
+            this.reader = new BindingReader(new NonBlockingReader("test", input));
+        }
+    }
+
+    static class QueueInput extends Reader {
+        BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+
+        void write(String s) {
+            s.chars().forEach(queue::add);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                int c = queue.take();
+                if (c < 0) {
+                    return -1;
+                }
+                cbuf[off] = (char) c;
+                return 1;
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public void close() {
+            queue.add(-1);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        QueueInput in = new QueueInput();
+        ExternalTerminal terminal = new ExternalTerminal("test", "xterm-256color",
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), "UTF-8");
+        try {
+            CountingMode mode = new CountingMode();
+            TestApp app = new TestApp(mode, terminal, in);
+            mode.init(app);
+            app.setCurrentMode(mode);
+            app.setMaxCoalescedCommands(4);
+            app.setMaxFrameLatency(200); //the reader transfers inputs by another thread
+
+            in.write("jjjjjj");
+            mode.runRootCommand(app);
+            mode.runPendingCommands(app);
+            Assert.assertEquals("coalesced", 4, mode.count);
+
+            mode.runRootCommand(app);
+            mode.runPendingCommands(app);
+            Assert.assertEquals("rest", 6, mode.count);
+
+            app.setMaxFrameLatency(5000); //returns as soon as the input arrives
+            new Thread(() -> {
+                try {
+                    Thread.sleep(20);
+                    in.write("j");
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }).start();
+            mode.runPendingCommands(app);
+            Assert.assertEquals("within latency", 7, mode.count);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleRenderThread;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test15ConsoleRenderThreadTest {
+    static class RecordingDisplay extends Display {
+        volatile List<AttributedString> lastLines;
+
+        RecordingDisplay(ExternalTerminal terminal) {
+            super(terminal, true);
+        }
+
+        @Override
+        public void update(List<AttributedString> newLines, int targetCursorPos) {
+            lastLines = newLines;
+            super.update(newLines, targetCursorPos);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PipedOutputStream in = new PipedOutputStream(); //keeps the input open
+        ExternalTerminal terminal = new ExternalTerminal("test", "xterm-256color",
+                new PipedInputStream(in), out, "UTF-8");
+        terminal.setSize(new Size(40, 10));
+        RecordingDisplay display = new RecordingDisplay(terminal);
+        ConsoleRenderThread renderer = new ConsoleRenderThread(terminal, display);
+        renderer.setMaxFramesPerSecond(20);
+        renderer.start();
+        try {
+            Size size = new Size(40, 10);
+            List<AttributedString> lines = frame("first");
+            ConsoleRenderThread.Frame first = new ConsoleRenderThread.Frame(lines, 0, 0, size);
+            lines.clear();
+            Assert.assertEquals("snapshot", 10, first.lines.size());
+
+            renderer.publish(first);
+            renderer.awaitRendered();
+            Assert.assertTrue("first", out.toString("UTF-8").contains("first-0"));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 50; ++i) {
+                renderer.publish(new ConsoleRenderThread.Frame(frame("next" + i), 0, 0, size));
+            }
+            renderer.awaitRendered();
+            long millis = (System.nanoTime() - start) / 1000_000L;
+            Assert.assertEquals("published", 51, renderer.getPublishedCount());
+            Assert.assertTrue("capped: " + renderer.getRenderedCount() + " frames in " + millis + "ms",
+                    renderer.getRenderedCount() <= 2 + millis / 50);
+            Assert.assertEquals("latest", "next49-0", display.lastLines.get(0).toString());
+            Assert.assertNull(renderer.getError());
+        } finally {
+            renderer.close();
+            in.close();
+            terminal.close();
+        }
+        Assert.assertFalse("stopped", renderer.isAlive());
+    }
+
+    private List<AttributedString> frame(String name) {
+        List<AttributedString> lines = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            lines.add(new AttributedString(name + "-" + i));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,104 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleFrameTerminal;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.Display;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test16ConsoleFrameTerminalTest {
+    static class CountingTerminal extends ExternalTerminal {
+        int writes;
+        int flushes;
+        public OutputStream counting;
+
+        CountingTerminal(InputStream in, OutputStream out) throws IOException {
+            super("test", "xterm-256color", in, out, "UTF-8");
+            counting = new FilterOutputStream(super.output()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    ++writes;
+                    for (int i = 0; i < len; ++i) {
+                        out.write(b[off + i]);
+                    }
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    ++writes;
+                    out.write(b);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    ++flushes;
+                    super.flush();
+                }
+            };
+        }
+
+        @Override
+        public OutputStream output() {
+            return counting;
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PipedOutputStream in = new PipedOutputStream(); //keeps the input open
+        CountingTerminal terminal = new CountingTerminal(new PipedInputStream(in), out);
+        terminal.setSize(new Size(40, 10));
+        ConsoleFrameTerminal frameTerminal = new ConsoleFrameTerminal(terminal, StandardCharsets.UTF_8);
+        Display display = new Display(frameTerminal, true);
+        display.resize(10, 40);
+        try {
+            frameTerminal.writer().print("buffered");
+            Assert.assertEquals("buffered", 0, terminal.writes);
+            display.update(frame("first"), 0); //the display flushes the terminal at the end
+            frameTerminal.flush();
+            Assert.assertEquals("single write", 1, terminal.writes);
+            Assert.assertEquals("single flush", 1, terminal.flushes);
+            Assert.assertEquals("frames", 1, frameTerminal.getFrames());
+            Assert.assertEquals("bytes", out.size(), frameTerminal.getLastFrameBytes());
+            Assert.assertTrue("text", out.toString("UTF-8").startsWith("buffered"));
+            Assert.assertTrue("text", out.toString("UTF-8").contains("first-9"));
+            int capacity = frameTerminal.getBufferCapacity();
+
+            frameTerminal.flush();
+            Assert.assertEquals("empty", 1, frameTerminal.getFrames());
+
+            display.update(frame("second \u3042"), 0);
+            frameTerminal.flush();
+            Assert.assertEquals("single write", 2, terminal.writes);
+            Assert.assertEquals("frames", 2, frameTerminal.getFrames());
+            Assert.assertEquals("total", out.size(), frameTerminal.getTotalBytes());
+            Assert.assertTrue("encoded", out.toString("UTF-8").contains("second \u3042"));
+            Assert.assertEquals("reused", capacity, frameTerminal.getBufferCapacity());
+        } finally {
+            in.close();
+            terminal.close();
+        }
+    }
+
+    private List<AttributedString> frame(String name) {
+        List<AttributedString> lines = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            lines.add(new AttributedString(name + "-" + i));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,141 @@
+package csl.console.test;
+
+import org.jline.terminal.impl.ExternalTerminal;
+import org.jline.utils.AttributedCharSequenceEx;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStringCached;
+import org.jline.utils.AttributedStyle;
+import org.jline.utils.AttributedStyleEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Random;
+
+public class Test17AttributedStyleEncoderTest {
+    @Test
+    public void test() throws Exception {
+        PipedOutputStream in = new PipedOutputStream(); //keeps the input open
+        ExternalTerminal terminal = new ExternalTerminal("test", "xterm-256color",
+                new PipedInputStream(in), new ByteArrayOutputStream(), "UTF-8");
+        try {
+            AttributedStyleEncoder encoder = AttributedStyleEncoder.get(terminal);
+            Assert.assertSame("cached", encoder, AttributedStyleEncoder.get(terminal));
+
+            Random random = new Random(17);
+            StringBuilder chars = new StringBuilder();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int n = 0; n < 200; ++n) {
+                AttributedString str = randomString(random);
+                chars.setLength(0);
+                encoder.append(str, chars);
+                Assert.assertEquals(str.toString(), str.toAnsi(terminal), chars.toString());
+
+                bytes.reset();
+                encoder.append(str, bytes);
+                Assert.assertEquals(str.toString(), chars.toString(), bytes.toString("UTF-8"));
+            }
+        } finally {
+            in.close();
+            terminal.close();
+        }
+    }
+
+    @Test
+    public void testColors() {
+        AttributedString str = new AttributedStringBuilder()
+                .append("a", AttributedStyle.DEFAULT.foreground(200))
+                .append("b", AttributedStyle.DEFAULT.background(3).bold())
+                .append("c")
+                .toAttributedString();
+        StringBuilder buf = new StringBuilder();
+        new AttributedStyleEncoder(256).append(str, buf);
+        Assert.assertEquals("\033[38;5;200ma\033[1;39;43mb\033[0mc", buf.toString());
+
+        buf.setLength(0);
+        new AttributedStyleEncoder(8).append(str, buf);
+        Assert.assertEquals("\033[30ma\033[1;39;43mb\033[0mc", buf.toString());
+
+        buf.setLength(0);
+        new AttributedStyleEncoder(0).append(str, buf);
+        Assert.assertEquals("no colors", "abc", buf.toString());
+    }
+
+    @Test
+    public void testDefault() {
+        AttributedString str = new AttributedStringBuilder()
+                .append("x", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED))
+                .append("y", AttributedStyle.DEFAULT.background(AttributedStyle.BLUE))
+                .toAttributedString();
+        StringBuilder buf = new StringBuilder();
+        AttributedStyleEncoder.get(null).append(str, buf);
+        Assert.assertEquals("\033[31mx\033[39;44my\033[0m", buf.toString());
+
+        AttributedCharSequenceEx ex = new AttributedCharSequenceEx() {
+            @Override
+            public AttributedStyle styleAt(int index) {
+                return str.styleAt(index);
+            }
+
+            @Override
+            public int length() {
+                return str.length();
+            }
+
+            @Override
+            public char charAt(int index) {
+                return str.charAt(index);
+            }
+
+            @Override
+            public AttributedString subSequence(int start, int end) {
+                return str.subSequence(start, end);
+            }
+
+            @Override
+            protected char[] buffer() {
+                return AttributedStringCached.getBuffer(str);
+            }
+
+            @Override
+            protected int offset() {
+                return AttributedStringCached.getStart(str);
+            }
+        };
+        Assert.assertEquals(buf.toString(), ex.toAnsi());
+    }
+
+    /** jline's toAnsi encodes bright colors 8..15 by 9x/10x, which are 38;5;n as the encoder and the former toAnsi of Ex */
+    private int randomColor(Random random) {
+        int c = random.nextInt(248);
+        return c < 8 ? c : c + 8;
+    }
+
+    private AttributedString randomString(Random random) {
+        AttributedStringBuilder buf = new AttributedStringBuilder();
+        for (int i = 0, n = random.nextInt(6); i < n; ++i) {
+            AttributedStyle style = AttributedStyle.DEFAULT;
+            if (random.nextBoolean()) {
+                style = style.foreground(randomColor(random));
+            }
+            if (random.nextBoolean()) {
+                style = style.background(randomColor(random));
+            }
+            switch (random.nextInt(8)) {
+                case 0: style = style.bold(); break;
+                case 1: style = style.faint(); break;
+                case 2: style = style.italic(); break;
+                case 3: style = style.underline(); break;
+                case 4: style = style.blink(); break;
+                case 5: style = style.inverse(); break;
+                case 6: style = style.crossedOut(); break;
+                default: break;
+            }
+            buf.append(random.nextBoolean() ? "x\u3042" : "y\ud83d\ude00", style);
+        }
+        return buf.toAttributedString();
+    }
+}
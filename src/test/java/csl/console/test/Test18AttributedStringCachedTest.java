@@ -0,0 +1,88 @@
+package csl.console.test;
+
+import csl.console.view.TerminalLineColumnsWriting;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStringCached;
+import org.jline.utils.AttributedStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Test18AttributedStringCachedTest {
+    @Test
+    public void test() {
+        Random random = new Random(18);
+        for (int n = 0; n < 500; ++n) {
+            AttributedString str = randomString(random);
+            AttributedStringCached cached = AttributedStringCached.of(str);
+            Assert.assertSame(cached, AttributedStringCached.of(cached));
+            Assert.assertEquals(str.toString(), str.columnLength(), cached.columnLength());
+            Assert.assertEquals(str.toString(), cached, str);
+            Assert.assertEquals(str.toString(), cached.hashCode(), AttributedStringCached.of(str).hashCode());
+            for (int k = 0; k < 10; ++k) {
+                int start = random.nextInt(12) - 1;
+                int stop = start + random.nextInt(12) - 1;
+                AttributedString sub = cached.columnSubSequence(start, stop);
+                Assert.assertEquals(str + " " + start + ":" + stop, sub, str.columnSubSequence(start, stop));
+                Assert.assertEquals(str + " " + start + ":" + stop, str.columnSubSequence(start, stop).columnLength(), sub.columnLength());
+            }
+        }
+    }
+
+    @Test
+    public void testAscii() {
+        AttributedStringCached ascii = AttributedStringCached.of(new AttributedString("hello"));
+        Assert.assertTrue(ascii.isAscii());
+        Assert.assertEquals(3, ascii.columnToIndex(3));
+        Assert.assertEquals("ell", ascii.columnSubSequence(1, 4).toString());
+
+        AttributedStringCached wide = AttributedStringCached.of(new AttributedString("h\u3042llo"));
+        Assert.assertFalse(wide.isAscii());
+        Assert.assertEquals(6, wide.columnLength());
+        Assert.assertEquals(-1, wide.columnToIndex(3));
+
+        AttributedStringCached hidden = AttributedStringCached.of(new AttributedStringBuilder()
+                .append("ab").append("cd", AttributedStyle.DEFAULT.hidden()).toAttributedString());
+        Assert.assertFalse(hidden.isAscii());
+        Assert.assertEquals(2, hidden.columnLength());
+    }
+
+    @Test
+    public void testWriting() {
+        Random random = new Random(180);
+        for (int n = 0; n < 200; ++n) {
+            List<AttributedString> tokens = new ArrayList<>();
+            for (int i = 0, l = random.nextInt(5); i < l; ++i) {
+                tokens.add(randomString(random));
+            }
+            int width = 1 + random.nextInt(20);
+            int start = random.nextInt(10);
+            int columnWidth = random.nextInt(30);
+            Assert.assertEquals(tokens.toString(),
+                    write(tokens, width, start, columnWidth),
+                    write(AttributedStringCached.of(tokens), width, start, columnWidth)); //lines are built by a builder
+        }
+    }
+
+    private List<AttributedString> write(List<AttributedString> tokens, int width, int start, int columnWidth) {
+        TerminalLineColumnsWriting writing = new TerminalLineColumnsWriting(width, 1);
+        writing.nextColumn(start, columnWidth);
+        tokens.forEach(writing::append);
+        writing.nextLine(true);
+        return writing.getLines();
+    }
+
+    private AttributedString randomString(Random random) {
+        AttributedStringBuilder buf = new AttributedStringBuilder();
+        for (int i = 0, n = random.nextInt(8); i < n; ++i) {
+            int k = random.nextInt(10);
+            String s = k == 0 ? "\u3042" : k == 1 ? "\t" : Character.toString((char) ('a' + k));
+            buf.append(s, random.nextInt(10) == 0 ? AttributedStyle.DEFAULT.hidden() : AttributedStyle.DEFAULT.bold());
+        }
+        return buf.toAttributedString();
+    }
+}
@@ -0,0 +1,66 @@
+package csl.console.test;
+
+import csl.console.view.TerminalItemLine;
+import csl.console.view.TerminalItemNode;
+import csl.console.view.TerminalLineColumnsWriting;
+import csl.console.view.TerminalTreeBase;
+import csl.console.view.TerminalTreeView;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringCached;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Test19TerminalLineColumnsWritingTest {
+    @Test
+    public void testEdges() {
+        for (AttributedString token : new AttributedString[] {
+                new AttributedString("abcdef"), AttributedStringCached.of(new AttributedString("abcdef"))}) {
+            TerminalLineColumnsWriting writing = new TerminalLineColumnsWriting(20, 1);
+            writing.append(token);
+            writing.nextColumn(0, 9); //a column of width 9
+            writing.append(token);
+            writing.appendSpace(2);
+            writing.append(token);
+            writing.appendSpace(5);
+            writing.nextLine(true);
+            Assert.assertEquals("abcdefabcdef  a", writing.getLines().get(0).toString());
+
+            writing.reset(5);
+            writing.appendSpace(2);
+            writing.append(token);
+            writing.nextLine(true);
+            Assert.assertEquals("reset", 1, writing.getLines().size());
+            Assert.assertEquals("reset", "  abc", writing.getLines().get(0).toString());
+            Assert.assertEquals("reset", 1, writing.getLineY());
+        }
+    }
+
+    @Test
+    public void testReuse() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        for (int i = 0; i < 30; ++i) {
+            root.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("line-" + i, "0123456789abcdefghijklmnopqrstuvwxyz-" + i, "item-" + i)));
+        }
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = new TerminalTreeView(root, tree);
+        view.setWidth(30);
+        view.setHeight(10);
+
+        TerminalLineColumnsWriting writing = view.write();
+        for (int i = 0; i < 20; ++i) {
+            if (i % 2 == 0) {
+                view.scrollToNextLine();
+            } else {
+                view.scrollToNextColumn();
+            }
+            Assert.assertSame("reused", writing, view.write());
+
+            TerminalLineColumnsWriting fresh = new TerminalLineColumnsWriting(30, 10);
+            for (TerminalTreeView.DisplayItem item : view.getDisplayItems()) {
+                view.writeLine(fresh, item);
+            }
+            Assert.assertEquals("frame " + i, fresh.getLines(), writing.getLines());
+        }
+    }
+}
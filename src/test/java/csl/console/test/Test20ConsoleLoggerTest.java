@@ -0,0 +1,33 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Test20ConsoleLoggerTest {
+    @Test
+    public void testFormat() {
+        Assert.assertEquals("a=1 b=[x]", ConsoleLogger.format("a={} b={}", 1, "[x]"));
+        Assert.assertEquals("a=1 b={}", ConsoleLogger.format("a={} b={}", 1));
+        Assert.assertEquals("a=1", ConsoleLogger.format("a={}", 1, 2));
+        Assert.assertEquals("no args", ConsoleLogger.format("no args"));
+        Assert.assertEquals("null", ConsoleLogger.format("{}", (Object) null));
+    }
+
+    @Test
+    public void testDisabled() {
+        if (ConsoleLogger.ENABLED) { //csl.console.log is set
+            return;
+        }
+        Assert.assertFalse(ConsoleLogger.isEnabled(ConsoleLogger.Level.ERROR));
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, () -> {
+            throw new AssertionError("the supplier is called");
+        });
+        ConsoleLogger.log(ConsoleLogger.Level.DEBUG, "{}", new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("the arg is formatted");
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class Test21ConsoleLoggerAsyncFileTest {
+    @Test
+    public void test() throws Exception {
+        File file = File.createTempFile("console-log", ".txt");
+        try {
+            ConsoleLogger.LogDestAsyncFile dest = new ConsoleLogger.LogDestAsyncFile(file, 100_000, 5);
+            for (int i = 0; i < 10_000; ++i) {
+                dest.accept("line " + i);
+            }
+            dest.close();
+            Assert.assertEquals(0, dest.getDropped());
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            Assert.assertEquals(10_000, lines.size());
+            for (int i = 0; i < lines.size(); ++i) {
+                Assert.assertEquals("line " + i, lines.get(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDropped() throws Exception {
+        File file = File.createTempFile("console-log", ".txt");
+        try {
+            ConsoleLogger.LogDestAsyncFile dest = new ConsoleLogger.LogDestAsyncFile(file, 16, 1000);
+            int n = 100_000;
+            for (int i = 0; i < n; ++i) {
+                dest.accept("line " + i);
+            }
+            dest.close();
+            Assert.assertNull(dest.getError());
+            Assert.assertTrue("dropped " + dest.getDropped(), dest.getDropped() > 0);
+
+            long written = 0;
+            long reported = 0;
+            int last = -1;
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("[ConsoleLogger] dropped ")) {
+                    reported += Long.parseLong(line.split(" ")[2]);
+                } else {
+                    int i = Integer.parseInt(line.substring("line ".length()));
+                    Assert.assertTrue(last + " " + i, last < i);
+                    last = i;
+                    ++written;
+                }
+            }
+            Assert.assertEquals(dest.getDropped(), reported);
+            Assert.assertEquals(n, written + reported);
+        } finally {
+            file.delete();
+        }
+    }
+}
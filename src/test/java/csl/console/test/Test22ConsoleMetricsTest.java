@@ -0,0 +1,104 @@
+package csl.console.test;
+
+import csl.console.view.ConsoleApplication;
+import csl.console.view.ConsoleMetrics;
+import csl.console.view.ConsoleMode;
+import csl.console.view.TerminalItemLine;
+import csl.console.view.TerminalItemNode;
+import csl.console.view.TerminalTreeBase;
+import csl.console.view.TerminalTreeCounting;
+import csl.console.view.TerminalTreeView;
+import org.jline.terminal.Size;
+import org.jline.utils.AttributedString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Test22ConsoleMetricsTest {
+    @Test
+    public void testHistogram() {
+        ConsoleMetrics.Histogram h = new ConsoleMetrics.Histogram();
+        Assert.assertEquals(0, h.getPercentile(0.5));
+        for (int i = 1; i <= 100; ++i) {
+            h.add(i);
+        }
+        Assert.assertEquals(100, h.getCount());
+        Assert.assertTrue("mean " + h.getMean(), Math.abs(h.getMean() - 50.5) < 0.001);
+        Assert.assertEquals(100, h.getMax());
+        Assert.assertEquals("50 in [32,64)", 63, h.getPercentile(0.5));
+        Assert.assertEquals("clipped by max", 100, h.getPercentile(0.99));
+    }
+
+    @Test
+    public void testTreeView() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        for (int i = 0; i < 30; ++i) {
+            root.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("line-" + i)));
+        }
+        TerminalTreeBase base = new TerminalTreeBase();
+        base.open(root);
+        ConsoleMetrics metrics = new ConsoleMetrics(true);
+        TerminalTreeView view = new TerminalTreeView(root, new TerminalTreeCounting(base, metrics));
+        view.setMetrics(metrics);
+        view.setHeight(10);
+
+        view.write();
+        metrics.endFrame();
+        Assert.assertEquals(1, metrics.getFrames());
+        Assert.assertEquals(1, metrics.getHistogram(ConsoleMetrics.Phase.BUILD).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(ConsoleMetrics.Phase.TOKENS).getCount());
+        Assert.assertEquals(1, metrics.getHistogram(ConsoleMetrics.Phase.WRITE).getCount());
+        Assert.assertTrue(metrics.getLastFrame(ConsoleMetrics.Phase.BUILD) > 0);
+        Assert.assertNotNull(metrics.getSlowestPhase());
+        long calls = metrics.getTreeCallCount("getColumnTokens");
+        Assert.assertTrue("getColumnTokens " + calls, calls > 0);
+        Assert.assertTrue(metrics.getTreeCallsPerFrame().getMax() >= calls);
+
+        view.write(); //no changes
+        metrics.endFrame();
+        Assert.assertEquals(calls, metrics.getTreeCallCount("getColumnTokens"));
+        Assert.assertEquals(1, metrics.getHistogram(ConsoleMetrics.Phase.BUILD).getCount());
+        Assert.assertEquals(2, metrics.getHistogram(ConsoleMetrics.Phase.WRITE).getCount());
+
+        StringWriter out = new StringWriter();
+        metrics.export(new PrintWriter(out));
+        Assert.assertTrue(out.toString(), out.toString().contains("BUILD 1 "));
+        Assert.assertTrue(out.toString(), out.toString().contains("tree getColumnTokens " + calls));
+
+        metrics.setEnabled(false);
+        view.invalidateDisplayItems();
+        view.write();
+        metrics.endFrame();
+        Assert.assertEquals("disabled", 2, metrics.getFrames());
+        Assert.assertEquals("disabled", calls, metrics.getTreeCallCount("getColumnTokens"));
+    }
+
+    @Test
+    public void testHud() {
+        ConsoleMode mode = new ConsoleMode() {
+            @Override
+            public List<AttributedString> getLines(ConsoleApplication app) {
+                List<AttributedString> lines = new ArrayList<>();
+                lines.add(new AttributedString("hello"));
+                displayMetricsHud(app, lines);
+                return lines;
+            }
+        };
+        ConsoleApplication app = new ConsoleApplication(mode) {
+            @Override
+            public Size getSize() {
+                return new Size(60, 10);
+            }
+        };
+        app.toggleMetricsHud();
+        Assert.assertTrue(app.getMetrics().isEnabled());
+        AttributedString line = mode.getLines(app).get(0);
+        Assert.assertEquals(60, line.columnLength());
+        Assert.assertTrue(line.toString(), line.toString().startsWith("hello "));
+        Assert.assertTrue(line.toString(), line.toString().contains("fps "));
+    }
+}
@@ -0,0 +1,184 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.terminal.Size;
+import org.jline.utils.AttributedString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class Test23TerminalTreeSearchTest {
+    /** root: 20 nodes of 50 lines. only the root is open */
+    static TerminalItemNode build() {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        for (int i = 0; i < 20; ++i) {
+            TerminalItemNode node = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("node-" + i));
+            root.addChild(node);
+            for (int j = 0; j < 50; ++j) {
+                node.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("line-" + i + "-" + j)));
+            }
+        }
+        return root;
+    }
+
+    static TerminalTreeView view(TerminalItemNode root, TerminalTree tree) {
+        TerminalTreeView view = new TerminalTreeView(root, tree);
+        view.setHeight(10);
+        view.setWidth(80);
+        return view;
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        TerminalItemNode root = build();
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = view(root, tree);
+        view.search("re:line-13-7$");
+
+        TerminalTreeSearch search = new TerminalTreeSearch(view, view.getSearchStartItem(), true);
+        search.start();
+        search.await();
+        Assert.assertTrue(search.isDone());
+        Assert.assertNull(search.getError());
+        TerminalItem found = ((TerminalItemNode) root.getChildren().get(13)).getChildren().get(7);
+        Assert.assertSame(found, search.getResult());
+        Assert.assertTrue(search.getScanned() > 13 * 50);
+
+        for (TerminalItem node : root.getChildren()) {
+            Assert.assertFalse("not opened by the search", tree.isOpen(node));
+        }
+
+        view.openAncestorsAndMoveCursorTo(found);
+        Assert.assertSame(found, view.getItemOnCursor());
+        for (int i = 0; i < 20; ++i) {
+            Assert.assertEquals("node-" + i, i == 13, tree.isOpen(root.getChildren().get(i)));
+        }
+
+        view.search("re:node-2$");
+        search = new TerminalTreeSearch(view, view.getSearchStartItem(), false);
+        search.start();
+        search.await();
+        Assert.assertSame(root.getChildren().get(2), search.getResult());
+
+        view.search("re:line-4-49$"); //the last child of a closed node before the cursor
+        Assert.assertTrue(view.moveToSearchBackwardNonDisplay());
+        Assert.assertSame(((TerminalItemNode) root.getChildren().get(4)).getChildren().get(49), view.getItemOnCursor());
+        Assert.assertTrue(tree.isOpen(root.getChildren().get(4)));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        for (int i = 0; i < 1_000_000; ++i) {
+            root.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("line-" + i)));
+        }
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = view(root, tree);
+        view.search("never");
+
+        TerminalTreeSearch search = new TerminalTreeSearch(view, view.getSearchStartItem(), true);
+        search.start();
+        search.cancel();
+        search.await();
+        Assert.assertTrue(search.isDone());
+        Assert.assertTrue(search.isCanceled());
+        Assert.assertNull(search.getResult());
+        Assert.assertTrue("scanned " + search.getScanned(), search.getScanned() < 1_000_000);
+    }
+
+    @Test
+    public void testLazyWithMatchIndex() throws Exception {
+        Test24TerminalTreeMatchIndexTest.LazyNode root = new Test24TerminalTreeMatchIndexTest.LazyNode("n", 0);
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = view(root, tree);
+        view.setMatchIndexEnabled(true);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TerminalSearchEngine literal = TerminalSearchEngine.literal("never", false);
+        view.search(new TerminalSearchEngine() {
+            @Override
+            public boolean find(CharSequence text) {
+                if (Thread.currentThread().getName().equals("console-search")) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ie) {
+                        throw new RuntimeException(ie);
+                    }
+                }
+                return literal.find(text);
+            }
+
+            @Override
+            public int[] findAll(CharSequence text) {
+                return literal.findAll(text);
+            }
+        });
+
+        TerminalTreeSearch search = new TerminalTreeSearch(view, view.getSearchStartItem(), true);
+        search.start();
+        entered.await();
+        Assert.assertTrue(view.isSearchRunning());
+        Assert.assertFalse("paused while the search is running", view.buildMatchIndex(1000));
+        Assert.assertEquals(0, view.getMatchIndex().getScanned());
+
+        release.countDown();
+        search.await();
+        Assert.assertNull(search.getError());
+        Assert.assertFalse(view.isSearchRunning());
+        Assert.assertTrue(view.buildMatchIndex(Integer.MAX_VALUE));
+        Assert.assertEquals(0, view.getMatchIndex().size());
+
+        TerminalTreeCursor cursor = new TerminalTreeCursor.LogicalCursor(tree, root);
+        do {
+            Assert.assertEquals("loaded once " + cursor.getItem(), 1, ((Test24TerminalTreeMatchIndexTest.LazyNode) cursor.getItem()).loaded);
+        } while (cursor.next());
+    }
+
+    @Test
+    public void testOnDisplay() {
+        TerminalItemNode root = build();
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = view(root, tree);
+        view.search("re:node-[24]$");
+        Assert.assertTrue(view.moveToSearchForwardOnDisplay());
+        Assert.assertSame(root.getChildren().get(2), view.getItemOnCursor());
+        Assert.assertTrue(view.moveToSearchForwardOnDisplay());
+        Assert.assertSame(root.getChildren().get(4), view.getItemOnCursor());
+        Assert.assertTrue(view.moveToSearchBackwardOnDisplay());
+        Assert.assertSame(root.getChildren().get(2), view.getItemOnCursor());
+        Assert.assertFalse(view.moveToSearchBackwardOnDisplay());
+    }
+
+    @Test
+    public void testProgressLines() {
+        ConsoleModeProgress progress = new ConsoleModeProgress();
+        ConsoleApplication app = new ConsoleApplication(progress) {
+            @Override
+            public Size getSize() {
+                return new Size(30, 3);
+            }
+        };
+        List<AttributedString> lines = progress.getLines(app);
+        Assert.assertEquals(3, lines.size());
+
+        ConsoleModeProgress.Task task = new ConsoleModeProgress.Task() {
+            @Override public boolean isDone() { return false; }
+            @Override public void cancel() { }
+            @Override public void await() { }
+            @Override public String getProgressMessage() { return "Searching: 0123456789012345678901234567890123456789"; }
+        };
+        progress.setTask(task, Collections.singletonList(new AttributedString("top")), null);
+        lines = progress.getLines(app);
+        Assert.assertEquals("top", lines.get(0).toString());
+        Assert.assertEquals(29, lines.get(2).columnLength());
+        Assert.assertTrue(lines.get(2).toString().startsWith("Searching: "));
+    }
+}
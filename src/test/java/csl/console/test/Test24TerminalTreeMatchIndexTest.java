@@ -0,0 +1,249 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+public class Test24TerminalTreeMatchIndexTest {
+    @Test
+    public void test() throws Exception {
+        TerminalItemNode root = new TerminalItemNode().withColumnTokens(TerminalItemLine.toSingleStringColumnsFromStrings("root"));
+        List<TerminalItem> all = new ArrayList<>();
+        Test06TerminalTreeRowIndexTest.build(root, 0, all);
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+
+        Random random = new Random(24);
+        List<TerminalItem> matched = new ArrayList<>();
+        for (TerminalItem item : all) {
+            if (random.nextInt(5) == 0) {
+                matched.add(item);
+            }
+        }
+        Predicate<TerminalItem> matcher = matched::contains;
+        TerminalTreeMatchIndex index = new TerminalTreeMatchIndex(tree, root, matcher);
+        int chunks = 0;
+        while (!index.build(7)) {
+            Assert.assertFalse("not available while building", index.isAvailable());
+            ++chunks;
+        }
+        Assert.assertTrue("chunks " + chunks, chunks > 1);
+        Assert.assertTrue(index.isAvailable());
+        check(tree, root, matcher, index);
+
+        //structural change: adds children to a node
+        TerminalItemNode node = (TerminalItemNode) root.getChildren().get(2);
+        for (int i = 0; i < 5; ++i) {
+            TerminalItem child = node.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("new-" + i)));
+            if (i % 2 == 0) {
+                matched.add(child);
+            }
+        }
+        index.update(node);
+        Assert.assertFalse("pending", index.isDone());
+        Assert.assertTrue("the previous result is available", index.isAvailable());
+        index.build();
+        check(tree, root, matcher, index);
+    }
+
+    private void check(TerminalTree tree, TerminalItem root, Predicate<TerminalItem> matcher, TerminalTreeMatchIndex index) {
+        List<TerminalItem> preOrder = new ArrayList<>();
+        TerminalTreeCursor cursor = new TerminalTreeCursor.LogicalCursor(tree, root);
+        do {
+            preOrder.add(cursor.getItem());
+        } while (cursor.next());
+
+        List<TerminalItem> expected = new ArrayList<>();
+        preOrder.stream().filter(matcher).forEach(expected::add);
+        Assert.assertEquals(expected.size(), index.size());
+        for (int k = 0; k < expected.size(); ++k) {
+            Assert.assertEquals("k=" + k, expected.get(k), index.get(k));
+            Assert.assertEquals("k=" + k, k, index.indexOf(expected.get(k)));
+        }
+
+        int before = 0; //the number of matched items before the i-th item
+        for (int i = 0; i < preOrder.size(); ++i) {
+            TerminalItem item = preOrder.get(i);
+            boolean m = matcher.test(item);
+            int next = before + (m ? 1 : 0);
+            Assert.assertEquals("next " + item, next < expected.size() ? next : -1, index.next(item));
+            Assert.assertEquals("previous " + item, before - 1, index.previous(item));
+            if (m) {
+                ++before;
+            }
+        }
+    }
+
+    @Test
+    public void testHandles() {
+        int[] calls = new int[2];
+        TerminalTreeArray tree = new TerminalTreeArray() {
+            @Override
+            public List<TerminalItem> getChildren(TerminalItem item) {
+                calls[0]++;
+                return super.getChildren(item);
+            }
+
+            @Override
+            public TerminalItem getParent(TerminalItem item) {
+                calls[1]++;
+                return super.getParent(item);
+            }
+        };
+        int root = tree.addNode(-1, "root");
+        Random random = new Random(24);
+        List<Integer> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < 300; ++i) {
+            nodes.add(tree.addNode(nodes.get(random.nextInt(nodes.size())), "n" + i));
+        }
+        Predicate<TerminalItem> matcher = item -> tree.getId(item) % 3 == 0;
+        TerminalTreeMatchIndex index = new TerminalTreeMatchIndex(tree, tree.getItem(root), matcher);
+        index.build();
+        check(tree, tree.getItem(root), matcher, index);
+        Assert.assertEquals("sibling indices by ids", 0, calls[0]);
+
+        TerminalItem item = tree.getItem(nodes.get(nodes.size() - 1));
+        int k = index.indexOf(item);
+        int parents = calls[1];
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(k, index.indexOf(tree.getItem(nodes.get(nodes.size() - 1))));
+        }
+        Assert.assertEquals("cached for the same item", parents, calls[1]);
+    }
+
+    @Test
+    public void testStaleSiblingIndex() throws Exception {
+        TerminalItemNode root = new TerminalItemNode();
+        TerminalItem b = root.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("b")));
+        TerminalItem c = root.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("c")));
+        TerminalTreeBase tree = new TerminalTreeBase();
+        TerminalTreeMatchIndex index = new TerminalTreeMatchIndex(tree, root, item -> item != root);
+        index.build();
+
+        TerminalItemLine x = new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("x"));
+        root.getChildren().add(0, x); //sibling indices of b and c are stale
+        root.setItemAsChild(x);
+        index.update(root);
+        index.build();
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(0, index.indexOf(x));
+        Assert.assertEquals(1, index.indexOf(b));
+        Assert.assertEquals(2, index.indexOf(c));
+        Assert.assertEquals(2, index.next(b));
+        Assert.assertEquals(0, index.previous(b));
+    }
+
+    @Test
+    public void testView() throws Exception {
+        TerminalItemNode root = Test23TerminalTreeSearchTest.build();
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = Test23TerminalTreeSearchTest.view(root, tree);
+        view.setRowIndex(new TerminalTreeRowIndex(tree));
+        view.setMatchIndexEnabled(true);
+        view.search("re:line-\\d+-7$");
+
+        TerminalTreeMatchIndex index = view.getMatchIndex();
+        Assert.assertNull("not built yet", view.getMatchIndexIfAvailable());
+        while (!view.buildMatchIndex(100)) {
+            Assert.assertTrue(view.isMatchIndexBuilding());
+        }
+        Assert.assertSame(index, view.getMatchIndexIfAvailable());
+        Assert.assertEquals(20, index.size());
+        Assert.assertEquals("hidden", -1, index.getRow(3, view.getRowIndex()));
+
+        view.openAncestorsAndMoveCursorTo(index.get(3));
+        Assert.assertEquals(3, index.indexOf(view.getItemOnCursor()));
+        Assert.assertEquals(1 + 4 + 7, index.getRow(3, view.getRowIndex())); //root, node-0..3, line-3-0..6
+        Assert.assertEquals(1 + 4 + 7, view.getMatchRow(3));
+
+        //opening an item re-scans its sub-tree
+        TerminalItemNode node = (TerminalItemNode) root.getChildren().get(5);
+        TerminalItem added = node.addChild(new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings("line-99-7")));
+        view.openAncestorsAndMoveCursorTo(added);
+        Assert.assertTrue(view.isMatchIndexBuilding());
+        Assert.assertSame("the previous result is available", index, view.getMatchIndexIfAvailable());
+        while (!view.buildMatchIndex(100)) {
+            //continue
+        }
+        Assert.assertEquals(21, index.size());
+        Assert.assertEquals(6, index.indexOf(added));
+        Assert.assertEquals(view.getCursorRow(), view.getMatchRow(6));
+
+        view.search("re:line-\\d+-8$");
+        Assert.assertTrue("canceled", index.isCanceled());
+        Assert.assertTrue("replaced", index != view.getMatchIndex());
+    }
+
+    /** children are constructed on the first read, like the FileNode of the example */
+    public static class LazyNode extends TerminalItemNode {
+        protected int depth;
+        protected int loaded;
+
+        public LazyNode(String name, int depth) {
+            super(TerminalItemLine.toSingleStringColumnsFromStrings(name), null);
+            this.depth = depth;
+        }
+
+        @Override
+        public List<TerminalItem> getChildren() {
+            if (children == null) {
+                ++loaded;
+                List<TerminalItem> cs = new ArrayList<>();
+                if (depth < 3) {
+                    for (int i = 0; i < 10; ++i) {
+                        cs.add(new LazyNode(getColumnTokens().get(0).get(0) + "-" + i, depth + 1));
+                    }
+                }
+                withChildren(cs);
+            }
+            return children;
+        }
+    }
+
+    @Test
+    public void testLazy() {
+        LazyNode root = new LazyNode("n", 0);
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        TerminalTreeView view = Test23TerminalTreeSearchTest.view(root, tree);
+        view.setMatchIndexEnabled(true);
+        view.search("re:-7$");
+
+        Random random = new Random(24);
+        while (!view.buildMatchIndex(50)) {
+            //the view reads the tree between chunks on the same thread
+            view.open(view.getItemOnCursor(), true);
+            if (random.nextBoolean()) {
+                view.scrollToNextLineWithCursor();
+            } else {
+                view.scrollToPreviousLineWithCursor();
+            }
+            view.write();
+        }
+        TerminalTreeMatchIndex index = view.getMatchIndexIfAvailable();
+        Assert.assertNotNull(index);
+        Assert.assertTrue("the root and re-scans of opened items", index.getScanned() > 1 + 10 + 100 + 1000);
+        Assert.assertEquals(1 + 10 + 100, index.size()); //n-7, n-*-7, n-*-*-7
+
+        TerminalTreeCursor cursor = new TerminalTreeCursor.LogicalCursor(tree, root);
+        int k = 0;
+        do {
+            LazyNode node = (LazyNode) cursor.getItem();
+            Assert.assertEquals("loaded once " + node, 1, node.loaded);
+            Assert.assertEquals("children of " + node, node.depth < 3 ? 10 : 0, node.getChildren().size());
+            if (view.matchPattern(node)) {
+                Assert.assertSame(node, index.get(k));
+                ++k;
+            }
+        } while (cursor.next());
+        Assert.assertEquals(index.size(), k);
+    }
+}
@@ -0,0 +1,92 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class Test25TerminalMatchHighlighterTest {
+    @Test
+    public void test() {
+        Random random = new Random(25);
+        AttributedStyle style = AttributedStyle.DEFAULT.inverse();
+        for (String p : new String[] {"b", "bc+", "c|\u3042", "x*", "^d"}) {
+            Pattern pattern = Pattern.compile(p);
+            TerminalMatchHighlighter highlighter = new TerminalMatchHighlighter(TerminalSearchEngine.regex(pattern), style);
+            for (int n = 0; n < 300; ++n) {
+                AttributedString str = randomString(random);
+                TerminalMatchHighlighter.Highlighted h = highlighter.highlight(str);
+                Assert.assertEquals(p + " " + str, h.getToken(), str.styleMatches(pattern, style));
+                Assert.assertEquals(p + " " + str, pattern.matcher(str).find(), h.isMatched());
+                Assert.assertSame("cached", h, highlighter.highlight(new AttributedString(str)));
+            }
+        }
+    }
+
+    @Test
+    public void testNoPattern() {
+        TerminalMatchHighlighter highlighter = new TerminalMatchHighlighter(null, AttributedStyle.DEFAULT);
+        Assert.assertFalse(highlighter.isEnabled());
+        TerminalMatchHighlighter.Highlighted h = highlighter.highlight(new AttributedString("hello"));
+        Assert.assertFalse(h.isMatched());
+        Assert.assertEquals("hello", h.getToken().toString());
+    }
+
+    @Test
+    public void testCapacity() {
+        TerminalMatchHighlighter highlighter = new TerminalMatchHighlighter(TerminalSearchEngine.literal("a", false), AttributedStyle.DEFAULT, 10);
+        for (int i = 0; i < 100; ++i) {
+            highlighter.highlight(new AttributedString("a" + i));
+        }
+        Assert.assertEquals(10, highlighter.getCacheSize());
+    }
+
+    @Test
+    public void testView() {
+        TerminalItemNode root = Test23TerminalTreeSearchTest.build();
+        TerminalTreeBase tree = new TerminalTreeBase();
+        tree.open(root);
+        tree.open(root.getChildren().get(0));
+        TerminalTreeView view = Test23TerminalTreeSearchTest.view(root, tree);
+
+        view.search("re:ne-0-[12]");
+        TerminalMatchHighlighter highlighter = view.getHighlighter();
+        List<TerminalTreeView.DisplayItem> items = view.getDisplayItemsWithBuild(true);
+        int matched = 0;
+        for (TerminalTreeView.DisplayItem item : items) {
+            String text = item.getItem().toString();
+            List<int[]> ranges = item.getLastMatchedRanges();
+            if (!ranges.isEmpty()) {
+                ++matched;
+                int[] r = ranges.get(0);
+                Assert.assertEquals(text, "ne-0-1".length(), r[3] - r[2]);
+            }
+        }
+        Assert.assertEquals(2, matched);
+
+        view.setPatternStyle(AttributedStyle.DEFAULT.bold());
+        Assert.assertTrue("re-created by the style", highlighter != view.getHighlighter());
+
+        view.search((String) null);
+        Assert.assertFalse(view.getHighlighter().isEnabled());
+        for (TerminalTreeView.DisplayItem item : view.getDisplayItemsWithBuild(true)) {
+            Assert.assertTrue(item.getLastMatchedRanges().isEmpty());
+        }
+    }
+
+    private AttributedString randomString(Random random) {
+        AttributedStringBuilder buf = new AttributedStringBuilder();
+        for (int i = 0, n = random.nextInt(8); i < n; ++i) {
+            int k = random.nextInt(6);
+            String s = k == 0 ? "\u3042" : Character.toString((char) ('a' + k));
+            buf.append(s, random.nextInt(3) == 0 ? AttributedStyle.DEFAULT.bold() : AttributedStyle.DEFAULT);
+        }
+        return buf.toAttributedString();
+    }
+}
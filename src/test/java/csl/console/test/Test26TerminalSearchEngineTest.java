@@ -0,0 +1,58 @@
+package csl.console.test;
+
+import csl.console.view.TerminalSearchEngine;
+import org.jline.utils.AttributedString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class Test26TerminalSearchEngineTest {
+    @Test
+    public void testParse() {
+        Assert.assertNull(TerminalSearchEngine.parse(null));
+        Assert.assertNull(TerminalSearchEngine.parse(""));
+        Assert.assertNull(TerminalSearchEngine.parse("ic:"));
+        Assert.assertEquals("lit:a.b", TerminalSearchEngine.parse("a.b").toString());
+        Assert.assertEquals("lit:re:x", TerminalSearchEngine.parse("lit:re:x").toString());
+        Assert.assertEquals("ic:Hello", TerminalSearchEngine.parse("ic:Hello").toString());
+        Assert.assertEquals("re:a.b", TerminalSearchEngine.parse("re:a.b").toString());
+
+        Assert.assertFalse(TerminalSearchEngine.parse("a.b").find("axb"));
+        Assert.assertTrue(TerminalSearchEngine.parse("re:a.b").find("axb"));
+        Assert.assertTrue(TerminalSearchEngine.parse("ic:Hello").find("say HELLO"));
+        Assert.assertFalse(TerminalSearchEngine.parse("Hello").find("say HELLO"));
+    }
+
+    @Test
+    public void testLiteral() {
+        Random random = new Random(26);
+        //U+3061 has the same low byte as 'a'
+        String chars = "abcAB\u3061\u3042";
+        for (int n = 0; n < 3000; ++n) {
+            String literal = randomString(random, chars, 1 + random.nextInt(4));
+            String text = randomString(random, chars, random.nextInt(20));
+            boolean ignoreCase = random.nextBoolean();
+            TerminalSearchEngine engine = TerminalSearchEngine.literal(literal, ignoreCase);
+            Pattern pattern = Pattern.compile(Pattern.quote(literal), ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+            TerminalSearchEngine expected = TerminalSearchEngine.regex(pattern);
+
+            //a sub-sequence shares the buffer with an offset
+            AttributedString token = new AttributedString("xx" + text + "yy").subSequence(2, 2 + text.length());
+            String msg = literal + " " + ignoreCase + " " + text;
+            Assert.assertEquals(msg, expected.find(text), engine.find(token));
+            Assert.assertEquals(msg, expected.find(text), engine.find(text));
+            Assert.assertEquals(msg, Arrays.toString(expected.findAll(text)), Arrays.toString(engine.findAll(token)));
+        }
+    }
+
+    private String randomString(Random random, String chars, int length) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package csl.console.test;
+
+import csl.console.view.RingList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class Test27RingListTest {
+    @Test
+    public void testWrapAround() {
+        RingList<Integer> list = new RingList<>(4);
+        list.addLast(1);
+        list.addLast(2);
+        list.addFirst(0); //head wraps to the end of the array
+        list.addFirst(-1);
+        Assert.assertEquals("[-1, 0, 1, 2]", list.toString());
+        Assert.assertEquals(-1, (int) list.removeFirst());
+        list.addLast(3); //the tail wraps to the start of the array
+        Assert.assertEquals("[0, 1, 2, 3]", list.toString());
+        Assert.assertEquals(3, (int) list.getLast());
+        Assert.assertEquals(0, (int) list.getFirst());
+
+        list.addFirst(-2); //grows while wrapped
+        list.addLast(4);
+        Assert.assertEquals("[-2, 0, 1, 2, 3, 4]", list.toString());
+
+        Assert.assertEquals(1, (int) list.set(2, 10));
+        Assert.assertEquals(10, (int) list.get(2));
+        Assert.assertEquals(4, (int) list.removeLast());
+        Assert.assertEquals(-2, (int) list.removeFirst());
+        Assert.assertEquals("[0, 10, 2, 3]", list.toString());
+    }
+
+    @Test
+    public void testEmpty() {
+        RingList<Integer> list = new RingList<>(1);
+        try {
+            list.removeFirst();
+            Assert.fail("removeFirst of empty");
+        } catch (NoSuchElementException ex) {
+            //ok
+        }
+        try {
+            list.get(0);
+            Assert.fail("get of empty");
+        } catch (IndexOutOfBoundsException ex) {
+            //ok
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(27);
+        RingList<Integer> list = new RingList<>(2);
+        List<Integer> expected = new ArrayList<>();
+        for (int n = 0; n < 5000; ++n) {
+            int op = random.nextInt(8);
+            int v = random.nextInt(1000);
+            if (op == 0) {
+                list.addFirst(v);
+                expected.add(0, v);
+            } else if (op == 1 || op == 2) {
+                list.addLast(v);
+                expected.add(v);
+            } else if (op == 3 && !expected.isEmpty()) {
+                Assert.assertEquals(expected.remove(0), list.removeFirst());
+            } else if (op == 4 && !expected.isEmpty()) {
+                Assert.assertEquals(expected.remove(expected.size() - 1), list.removeLast());
+            } else if (op == 5) {
+                int i = random.nextInt(expected.size() + 1);
+                list.add(i, v);
+                expected.add(i, v);
+            } else if (op == 6 && !expected.isEmpty()) {
+                int i = random.nextInt(expected.size());
+                Assert.assertEquals(expected.remove(i), list.remove(i));
+            } else if (op == 7 && !expected.isEmpty()) {
+                int i = random.nextInt(expected.size());
+                Assert.assertEquals(expected.set(i, v), list.set(i, v));
+            }
+            Assert.assertEquals("size at " + n, expected.size(), list.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                Assert.assertEquals("at " + n + " [" + i + "]", expected.get(i), list.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package csl.console.test;
+
+import csl.console.view.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Test28TerminalItemSiblingTest {
+    static TerminalItemLine line(String s) {
+        return new TerminalItemLine(TerminalItemLine.toSingleStringColumnsFromStrings(s));
+    }
+
+    @Test
+    public void testAddChild() {
+        TerminalItemNode root = new TerminalItemNode();
+        List<TerminalItem> cs = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            cs.add(root.addChild(line("c" + i)));
+        }
+        check(new TerminalTreeBase(), cs);
+        for (int i = 0; i < cs.size(); ++i) {
+            Assert.assertEquals(i, ((TerminalItemLine) cs.get(i)).getSiblingIndex());
+        }
+    }
+
+    @Test
+    public void testWithChildren() {
+        List<TerminalItem> cs = Arrays.asList(line("a"), new TerminalItemNode(), line("b"), line("c"));
+        new TerminalItemNode().withChildren(new ArrayList<>(cs));
+        check(new TerminalTreeBase(), cs);
+        Assert.assertEquals(3, ((TerminalItemLine) cs.get(3)).getSiblingIndex());
+    }
+
+    @Test
+    public void testStaleHint() {
+        TerminalItemNode root = new TerminalItemNode();
+        TerminalItem b = root.addChild(line("b"));
+        TerminalItem c = root.addChild(line("c"));
+        TerminalItemLine x = line("x");
+        root.getChildren().add(0, x); //direct edit: hints of b and c are stale
+        root.setItemAsChild(x);
+
+        Assert.assertEquals(0, ((TerminalItemLine) b).getSiblingIndex());
+        Assert.assertEquals(1, TerminalTreeBase.indexOfChild(root.getChildren(), b));
+        Assert.assertEquals(2, TerminalTreeBase.indexOfChild(root.getChildren(), c));
+        Assert.assertEquals(0, TerminalTreeBase.indexOfChild(root.getChildren(), x));
+        check(new TerminalTreeBase(), Arrays.asList(x, b, c));
+    }
+
+    private void check(TerminalTree tree, List<TerminalItem> cs) {
+        for (int i = 0; i < cs.size(); ++i) {
+            TerminalItem item = cs.get(i);
+            Assert.assertSame("next of " + i, i + 1 < cs.size() ? cs.get(i + 1) : null, tree.getNextSibling(item));
+            Assert.assertSame("previous of " + i, i > 0 ? cs.get(i - 1) : null, tree.getPreviousSibling(item));
+        }
+    }
+}